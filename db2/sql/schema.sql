@@ -1,9 +1,12 @@
 drop table if exists item CASCADE;
+drop sequence if exists item_seq;
+create sequence item_seq start with 1 increment by 50;
 create table item
 (
-    id        bigint generated by default as identity,
+    id        bigint not null,
     item_name varchar(10),
     price     integer,
     quantity  integer,
+    version   bigint default 0 not null,
     primary key (id)
 );
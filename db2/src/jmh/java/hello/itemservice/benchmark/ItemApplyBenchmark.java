@@ -0,0 +1,97 @@
+package hello.itemservice.benchmark;
+
+import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.service.ItemCommand;
+import hello.itemservice.service.ItemService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * 등록, 수정이 섞인 변경 묶음 : save, update 를 하나씩 호출(호출마다 트랜잭션)하는 경우와 apply(한 트랜잭션) 비교
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ItemApplyBenchmark {
+
+    @Param({ItemBackends.JPA, ItemBackends.JDBC})
+    String backend;
+
+    @Param({"10", "100"})
+    int commandCount;
+
+    @Param({"10000"})
+    int dataSize;
+
+    ConfigurableApplicationContext context;
+    ItemService itemService;
+    long[] ids;
+    List<ItemCommand> commands;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = ItemBackends.start(backend);
+        itemService = context.getBean(ItemService.class);
+        ids = ItemBackends.load(itemService, dataSize);
+    }
+
+    /**
+     * 등록과 수정을 번갈아 섞는다. 수정은 값이 바뀌어야 UPDATE 가 실행된다.
+     */
+    @Setup(Level.Invocation)
+    public void newCommands() {
+        Random random = ThreadLocalRandom.current();
+        commands = new ArrayList<>(commandCount);
+        for (int i = 0; i < commandCount; i++) {
+            if (i % 2 == 0) {
+                commands.add(ItemCommand.create(ItemBackends.newItem(random, i)));
+            } else {
+                long id = ids[random.nextInt(ids.length)];
+                commands.add(ItemCommand.update(id,
+                        new ItemUpdateDto("item" + id, random.nextInt(100_000), random.nextInt(100))));
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int callEach() {
+        for (ItemCommand command : commands) {
+            if (command.getType() == ItemCommand.Type.CREATE) {
+                itemService.save(command.getItem());
+            } else {
+                itemService.update(command.getItemId(), command.getUpdateParam());
+            }
+        }
+        return commands.size();
+    }
+
+    @Benchmark
+    public int apply() {
+        return itemService.apply(commands).size();
+    }
+}
@@ -0,0 +1,115 @@
+package hello.itemservice.benchmark;
+
+import hello.itemservice.config.ColumnarConfig;
+import hello.itemservice.config.JdbcTemplateConfig;
+import hello.itemservice.config.JpaConfig;
+import hello.itemservice.config.MemoryConfig;
+import hello.itemservice.config.ShardedConfig;
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.memory.MemoryItemRepository;
+import hello.itemservice.service.ItemService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+
+/**
+ * 벤치마크용 스프링 컨텍스트 : ItemServiceApplication 의 @Import 를 고치지 않고 저장소 구현을 골라서 띄운다.
+ */
+public final class ItemBackends {
+
+    public static final String MEMORY = "memory";
+    public static final String JPA = "jpa";
+    public static final String COLUMNAR = "columnar";
+    public static final String SHARDED = "sharded";
+    public static final String JDBC = "jdbc";
+
+    private ItemBackends() {
+    }
+
+    public static ConfigurableApplicationContext start(String backend, String... args) {
+        Class<?> source = JPA.equals(backend) ? JpaBackend.class
+                : COLUMNAR.equals(backend) ? ColumnarBackend.class
+                : SHARDED.equals(backend) ? ShardedBackend.class
+                : JDBC.equals(backend) ? JdbcTemplateBackend.class
+                : MemoryBackend.class;
+        List<String> arguments = new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--logging.level.root=WARN",
+                "--logging.level.org.hibernate.SQL=WARN",
+                "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN"));
+        arguments.addAll(List.of(args));
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(source)
+                .web(WebApplicationType.NONE)
+                .run(arguments.toArray(new String[0]));
+
+        // MemoryItemRepository 는 저장소가 static 이라, 이전 측정의 데이터를 지운다.
+        if (MEMORY.equals(backend)) {
+            new MemoryItemRepository().clearStore();
+        }
+        return context;
+    }
+
+    /**
+     * 상품명은 "item" + 번호, 가격은 0 ~ 99,999 사이 임의 값으로 size 개를 저장하고 id 를 돌려준다.
+     */
+    public static long[] load(ItemService itemService, int size) {
+        Random random = new Random(size);
+        List<Item> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(newItem(random, i));
+        }
+        List<Item> savedItems = new ArrayList<>(size);
+        for (int from = 0; from < size; from += 10_000) {
+            savedItems.addAll(itemService.saveAll(items.subList(from, Math.min(size, from + 10_000))));
+        }
+        return savedItems.stream().mapToLong(Item::getId).toArray();
+    }
+
+    public static Item newItem(Random random, int number) {
+        return new Item("item" + number, random.nextInt(100_000), random.nextInt(100));
+    }
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = Item.class)
+    @Import(MemoryConfig.class)
+    static class MemoryBackend {
+    }
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = Item.class)
+    @Import(JpaConfig.class)
+    static class JpaBackend {
+    }
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = Item.class)
+    @Import(ColumnarConfig.class)
+    static class ColumnarBackend {
+    }
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = Item.class)
+    @Import(ShardedConfig.class)
+    static class ShardedBackend {
+    }
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = Item.class)
+    @Import(JdbcTemplateConfig.class)
+    static class JdbcTemplateBackend {
+    }
+}
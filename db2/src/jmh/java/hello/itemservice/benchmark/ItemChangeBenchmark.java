@@ -0,0 +1,85 @@
+package hello.itemservice.benchmark;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.repository.event.ItemChangeEvent;
+import hello.itemservice.repository.event.ItemChangeStream;
+import hello.itemservice.service.ItemService;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * 변경 이벤트 발행이 쓰기 지연 시간에 더하는 비용
+ * disabled : 발행하지 않음, none : 발행하지만 구독자 없음, one : 이벤트를 세기만 하는 구독자 하나
+ * 저장소 자체가 가장 빠른 메모리 저장소에서 비교한다. publish 는 저장소 없이 링 버퍼에 발행만 하는 비용이다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ItemChangeBenchmark {
+
+    @Param({"disabled", "none", "one"})
+    String subscribers;
+
+    @Param({"10000"})
+    int dataSize;
+
+    ConfigurableApplicationContext context;
+    ItemService itemService;
+    long[] ids;
+    LongAdder received = new LongAdder();
+    ItemChangeStream changeStream = new ItemChangeStream(1024); // 저장소 없이 발행만 잰다.
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = ItemBackends.start(ItemBackends.MEMORY, "--item.changes.enabled=" + !"disabled".equals(subscribers));
+        itemService = context.getBean(ItemService.class);
+        ids = ItemBackends.load(itemService, dataSize);
+        if ("one".equals(subscribers)) {
+            context.getBean(ItemChangeStream.class).subscribe("benchmark", events -> received.add(events.size()));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        changeStream.close();
+    }
+
+    @Benchmark
+    public void update() {
+        Random random = ThreadLocalRandom.current();
+        long id = ids[random.nextInt(ids.length)];
+        itemService.update(id, new ItemUpdateDto("item" + id, random.nextInt(100_000), random.nextInt(100)));
+    }
+
+    @Benchmark
+    public Item save() {
+        return itemService.save(ItemBackends.newItem(ThreadLocalRandom.current(), 0));
+    }
+
+    @Benchmark
+    public long publish() {
+        changeStream.publish(ItemChangeEvent.Type.UPDATE, 1L, "item", 1000, 1, null);
+        return changeStream.getCursor();
+    }
+}
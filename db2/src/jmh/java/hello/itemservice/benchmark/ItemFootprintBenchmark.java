@@ -0,0 +1,95 @@
+package hello.itemservice.benchmark;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.memory.ColumnarItemRepository;
+import hello.itemservice.repository.memory.MemoryItemRepository;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 메모리 저장소별 상품 하나당 힙 사용량
+ * 저장할 Item 을 만들기 전과 저장한 뒤 Item 목록을 버린 후의 (GC 후) 힙 사용량 차이를 bytesPerItem 으로 보고한다.
+ * 메모리 저장소는 받은 Item 을 그대로 보관하고, 컬럼형 저장소는 값만 복사하므로 둘 다 저장소가 잡고 있는 크기만 남는다.
+ * 시간은 GC 를 포함하므로 참고용이다.
+ * 인덱스(MemoryItemRepository 의 가격, 상품명 인덱스)까지 포함한 저장소 전체의 크기다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1) // 보조 결과(EVENTS)는 반복 횟수만큼 더해지므로 한 번만 측정한다.
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-XX:+UseParallelGC"}) // G1 은 큰 배열을 region 단위로 세서 사용량이 부풀려진다.
+public class ItemFootprintBenchmark {
+
+    @Param({ItemBackends.MEMORY, ItemBackends.COLUMNAR})
+    String backend;
+
+    @Param({"1000000"})
+    int dataSize;
+
+    long baseline;
+    List<Item> items;
+    ItemRepository itemRepository;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long bytesPerItem;
+    }
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        itemRepository = ItemBackends.COLUMNAR.equals(backend) ? new ColumnarItemRepository() : new MemoryItemRepository();
+        baseline = usedHeap();
+        Random random = new Random(dataSize);
+        items = new ArrayList<>(dataSize);
+        for (int i = 0; i < dataSize; i++) {
+            items.add(ItemBackends.newItem(random, i));
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        if (itemRepository instanceof MemoryItemRepository) {
+            ((MemoryItemRepository) itemRepository).clearStore();
+        }
+        itemRepository = null;
+    }
+
+    @Benchmark
+    public ItemRepository load(Footprint footprint) {
+        for (int from = 0; from < dataSize; from += 10_000) {
+            itemRepository.saveAll(items.subList(from, Math.min(dataSize, from + 10_000)));
+        }
+        items = null;
+        footprint.bytesPerItem = (usedHeap() - baseline) / dataSize;
+        return itemRepository;
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,134 @@
+package hello.itemservice.benchmark;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.service.ItemService;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.TypedQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.StringUtils;
+
+/**
+ * JpaItemRepository.findAll 의 쿼리 준비 비용 : 미리 등록한 named query vs 요청마다 JPQL 문자열을 만드는 이전 방식
+ * create : 쿼리를 만들고 파라미터를 바인딩하기까지만, execute : 한 페이지(20건)를 실제로 조회한다.
+ * 연산당 할당량은 gc 프로파일러(build.gradle 의 jmh 설정)로 본다.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ItemQueryBenchmark {
+
+    // JpaItemRepository 의 검색 조건 조합 (비트 플래그) 과 같다.
+    private static final int NAME = 1;
+    private static final int PRICE = 1 << 1;
+
+    @Param({"none", "name", "price", "nameAndPrice"})
+    String filter;
+
+    ConfigurableApplicationContext context;
+    EntityManager em;
+    String itemName;
+    Integer maxPrice;
+    int shape;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // JpaItemRepository 를 만들 때 named query 가 등록된다.
+        context = ItemBackends.start(ItemBackends.JPA);
+        ItemBackends.load(context.getBean(ItemService.class), 1_000);
+        em = context.getBean(EntityManagerFactory.class).createEntityManager();
+        itemName = filter.startsWith("name") ? "item1" : null;
+        maxPrice = filter.endsWith("rice") ? 50_000 : null;
+        shape = (itemName != null ? NAME : 0) | (maxPrice != null ? PRICE : 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+        context.close();
+    }
+
+    @Benchmark
+    public TypedQuery<Item> createNamed() {
+        return namedQuery();
+    }
+
+    @Benchmark
+    public TypedQuery<Item> createConcat() {
+        return concatQuery();
+    }
+
+    @Benchmark
+    public List<Item> executeNamed() {
+        List<Item> result = namedQuery().getResultList();
+        em.clear();
+        return result;
+    }
+
+    @Benchmark
+    public List<Item> executeConcat() {
+        List<Item> result = concatQuery().getResultList();
+        em.clear();
+        return result;
+    }
+
+    private TypedQuery<Item> namedQuery() {
+        TypedQuery<Item> query = em.createNamedQuery("Item.findAll." + shape, Item.class);
+        if ((shape & NAME) != 0) {
+            query.setParameter("itemName", itemName);
+        }
+        if ((shape & PRICE) != 0) {
+            query.setParameter("maxPrice", maxPrice);
+        }
+        return query.setMaxResults(20);
+    }
+
+    /**
+     * 이전 JpaItemRepository.findAll 과 같은 방식으로 요청마다 JPQL 을 이어 붙인다.
+     */
+    private TypedQuery<Item> concatQuery() {
+        String jpql = "select i from Item i";
+        if (StringUtils.hasText(itemName) || maxPrice != null) {
+            jpql += " where";
+        }
+        boolean andFlag = false;
+        if (StringUtils.hasText(itemName)) {
+            jpql += " i.itemName like concat('%',:itemName,'%')";
+            andFlag = true;
+        }
+        if (maxPrice != null) {
+            if (andFlag) {
+                jpql += " and";
+            }
+            jpql += " i.price <= :maxPrice";
+        }
+        jpql += " order by i.id";
+
+        TypedQuery<Item> query = em.createQuery(jpql, Item.class);
+        if (StringUtils.hasText(itemName)) {
+            query.setParameter("itemName", itemName);
+        }
+        if (maxPrice != null) {
+            query.setParameter("maxPrice", maxPrice);
+        }
+        return query.setMaxResults(20);
+    }
+}
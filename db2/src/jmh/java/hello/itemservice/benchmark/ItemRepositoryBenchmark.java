@@ -0,0 +1,125 @@
+package hello.itemservice.benchmark;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemDto;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.service.ItemService;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * ItemRepository 구현별(memory, columnar, sharded, jpa, jdbc) 기본 연산 성능
+ * 처리량과 평균 지연 시간을 같이 측정하고, gc 프로파일러(build.gradle 의 jmh 설정)로 연산당 할당량을 본다.
+ * 스레드 수는 ./gradlew jmh -PjmhThreads=8 처럼 바꿔서 실행한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ItemRepositoryBenchmark {
+
+    @Param({ItemBackends.MEMORY, ItemBackends.COLUMNAR, ItemBackends.SHARDED, ItemBackends.JPA, ItemBackends.JDBC})
+    String backend;
+
+    @Param({"1000", "100000"})
+    int dataSize;
+
+    ConfigurableApplicationContext context;
+    ItemService itemService;
+    long[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = ItemBackends.start(backend);
+        itemService = context.getBean(ItemService.class);
+        ids = ItemBackends.load(itemService, dataSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Item save() {
+        return itemService.save(ItemBackends.newItem(ThreadLocalRandom.current(), dataSize));
+    }
+
+    @Benchmark
+    public void update() {
+        Random random = ThreadLocalRandom.current();
+        long id = ids[random.nextInt(ids.length)];
+        itemService.update(id, new ItemUpdateDto("item" + id, random.nextInt(100_000), random.nextInt(100)));
+    }
+
+    @Benchmark
+    public Optional<Item> findById() {
+        return itemService.findById(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    @Benchmark
+    public Optional<ItemDto> findDtoById() {
+        return itemService.findDtoById(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    // findAll : 검색 조건 조합별, 목록 화면처럼 한 페이지(20건)씩
+
+    @Benchmark
+    public List<Item> findAllNoFilter() {
+        return itemService.findItems(page(null, null));
+    }
+
+    @Benchmark
+    public List<Item> findAllByName() {
+        return itemService.findItems(page("item12", null));
+    }
+
+    @Benchmark
+    public List<Item> findAllByPrice() {
+        return itemService.findItems(page(null, 1_000));
+    }
+
+    @Benchmark
+    public List<Item> findAllByNameAndPrice() {
+        return itemService.findItems(page("item1", 50_000));
+    }
+
+    // 엔티티 조회와 DTO 프로젝션의 할당량 비교용
+
+    @Benchmark
+    public List<ItemDto> findAllDtoNoFilter() {
+        return itemService.findItemDtos(page(null, null));
+    }
+
+    @Benchmark
+    public List<ItemDto> findAllDtoByNameAndPrice() {
+        return itemService.findItemDtos(page("item1", 50_000));
+    }
+
+    private ItemSearchCond page(String itemName, Integer maxPrice) {
+        ItemSearchCond cond = new ItemSearchCond(itemName, maxPrice);
+        cond.setAfterId(ids[ThreadLocalRandom.current().nextInt(ids.length / 2)]);
+        cond.setSize(20);
+        return cond;
+    }
+}
@@ -0,0 +1,77 @@
+package hello.itemservice.benchmark;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.service.ItemService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * 대량 저장 : save 를 반복 호출하는 경우와 saveAll(배치 INSERT) 비교
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ItemSaveAllBenchmark {
+
+    @Param({ItemBackends.JPA, ItemBackends.MEMORY})
+    String backend;
+
+    @Param({"1000"})
+    int batchSize;
+
+    ConfigurableApplicationContext context;
+    ItemService itemService;
+    List<Item> items;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = ItemBackends.start(backend);
+        itemService = context.getBean(ItemService.class);
+    }
+
+    @Setup(Level.Invocation)
+    public void newItems() {
+        Random random = new Random();
+        items = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            items.add(ItemBackends.newItem(random, i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int saveLoop() {
+        for (Item item : items) {
+            itemService.save(item);
+        }
+        return items.size();
+    }
+
+    @Benchmark
+    public int saveAll() {
+        return itemService.saveAll(items).size();
+    }
+}
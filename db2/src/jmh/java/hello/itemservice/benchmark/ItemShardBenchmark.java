@@ -0,0 +1,84 @@
+package hello.itemservice.benchmark;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.service.ItemService;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * 샤드 수에 따른 ShardedItemRepository 의 읽기/쓰기 처리량과 전체 검색 지연 시간
+ * shardCount=1 은 락 하나로 보호하는 저장소와 같다.
+ * 코어 수에 따른 변화는 스레드 수를 바꿔가며 실행해서 비교한다.
+ * ./gradlew jmh -PjmhIncludes=ItemShardBenchmark -PjmhThreads=8
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ItemShardBenchmark {
+
+    @Param({"1", "4", "16", "64"})
+    int shardCount;
+
+    @Param({"100000"})
+    int dataSize;
+
+    ConfigurableApplicationContext context;
+    ItemService itemService;
+    long[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = ItemBackends.start(ItemBackends.SHARDED, "--item.shard.count=" + shardCount);
+        itemService = context.getBean(ItemService.class);
+        ids = ItemBackends.load(itemService, dataSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<Item> read() {
+        return itemService.findById(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    @Benchmark
+    public void write() {
+        Random random = ThreadLocalRandom.current();
+        long id = ids[random.nextInt(ids.length)];
+        itemService.update(id, new ItemUpdateDto("item" + id, random.nextInt(100_000), random.nextInt(100)));
+    }
+
+    /**
+     * 페이지 없이 전체를 훑는 검색, 샤드 수만큼 나눠서 동시에 찾는다.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Item> searchAll() {
+        return itemService.findItems(new ItemSearchCond("item12", 50_000));
+    }
+}
@@ -1,7 +1,7 @@
 package hello.itemservice;
 
 import hello.itemservice.config.*;
-import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.service.ItemService;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
@@ -10,6 +10,9 @@ import org.springframework.context.annotation.Profile;
 
 
 //@Import(MemoryConfig.class)
+//@Import(ColumnarConfig.class)
+//@Import(ShardedConfig.class)
+//@Import(JdbcTemplateConfig.class)
 @Import(JpaConfig.class)
 @SpringBootApplication(scanBasePackages = "hello.itemservice.web")
 public class ItemServiceApplication {
@@ -20,8 +23,8 @@ public class ItemServiceApplication {
 
 	@Bean
 	@Profile("local")
-	public TestDataInit testDataInit(ItemRepository itemRepository) {
-		return new TestDataInit(itemRepository);
+	public TestDataInit testDataInit(ItemService itemService) {
+		return new TestDataInit(itemService);
 	}
 
 }
@@ -1,7 +1,7 @@
 package hello.itemservice;
 
 import hello.itemservice.domain.Item;
-import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.service.ItemService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
@@ -11,7 +11,8 @@ import org.springframework.context.event.EventListener;
 @RequiredArgsConstructor
 public class TestDataInit {
 
-    private final ItemRepository itemRepository;
+    // 저장소는 트랜잭션 안에서만 쓸 수 있으므로(MANDATORY), 트랜잭션을 여는 서비스로 저장한다.
+    private final ItemService itemService;
 
     /**
      * 확인용 초기 데이터 추가
@@ -19,8 +20,8 @@ public class TestDataInit {
     @EventListener(ApplicationReadyEvent.class)
     public void initData() {
         log.info("test data init");
-        itemRepository.save(new Item("itemA", 10000, 10));
-        itemRepository.save(new Item("itemB", 20000, 20));
+        itemService.save(new Item("itemA", 10000, 10));
+        itemService.save(new Item("itemB", 20000, 20));
     }
 
 }
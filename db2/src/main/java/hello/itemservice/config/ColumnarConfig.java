@@ -0,0 +1,33 @@
+package hello.itemservice.config;
+
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.memory.ColumnarItemRepository;
+import hello.itemservice.service.ItemService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+/**
+ * 상품을 primitive 배열로 저장하는 메모리 저장소(ColumnarItemRepository)를 사용한다.
+ */
+@Configuration
+@Import(ItemRepositoryDecorators.class)
+public class ColumnarConfig {
+
+    private final ItemRepositoryDecorators decorators;
+
+    public ColumnarConfig(ItemRepositoryDecorators decorators) {
+        this.decorators = decorators;
+    }
+
+    @Bean
+    public ItemService itemService() {
+        return decorators.itemService(itemRepository());
+    }
+
+    @Bean
+    public ItemRepository itemRepository() {
+        return decorators.decorate(new ColumnarItemRepository());
+    }
+
+}
@@ -0,0 +1,65 @@
+package hello.itemservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import javax.sql.DataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * item.datasource.replica.url 이 있으면 primary, replica 두 데이터소스를 만들고
+ * 트랜잭션의 readOnly 여부로 라우팅하는 dataSource 를 기본(@Primary)으로 등록한다.
+ * 없으면 스프링 부트가 만드는 데이터소스 하나를 그대로 사용한다.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "item.datasource.replica", name = "url")
+@EnableConfigurationProperties({DataSourceProperties.class, ItemDataSourceProperties.class})
+public class DataSourceConfig {
+
+    private final DataSourceProperties primaryProperties;
+    private final ItemDataSourceProperties.Replica replicaProperties;
+
+    public DataSourceConfig(DataSourceProperties primaryProperties, ItemDataSourceProperties itemDataSourceProperties) {
+        this.primaryProperties = primaryProperties;
+        this.replicaProperties = itemDataSourceProperties.getReplica();
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource() {
+        return new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(
+                primaryDataSource(), replicaDataSource(), replicaProperties.getRetryInterval().toMillis()));
+    }
+
+    /**
+     * 데이터소스를 직접 만들면 스프링 부트의 spring.datasource.hikari.* 설정이 적용되지 않으므로, 같은 접두사로 바인딩한다.
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource() {
+        HikariDataSource dataSource = primaryProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public HikariDataSource replicaDataSource() {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(replicaProperties.getUrl())
+                .username(replicaProperties.getUsername())
+                .password(replicaProperties.getPassword())
+                .build();
+        dataSource.setPoolName("replica");
+        dataSource.setConnectionTimeout(replicaProperties.getConnectionTimeout().toMillis());
+        return dataSource;
+    }
+}
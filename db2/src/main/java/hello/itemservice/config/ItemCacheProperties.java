@@ -0,0 +1,20 @@
+package hello.itemservice.config;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * item.cache.* 설정
+ */
+@Data
+@ConfigurationProperties("item.cache")
+public class ItemCacheProperties {
+
+    private boolean enabled = false;
+    private long maximumSize = 10_000;
+    private Duration expireAfterWrite = Duration.ofMinutes(10);
+    private long searchMaximumRows = 100_000; // 검색 결과 캐시에 담을 최대 행 수
+    private Duration negativeTtl = Duration.ofSeconds(5); // 없는 상품 id 를 기억하는 시간, enabled 와 상관없이 적용된다.
+    private Duration aggregatesTtl = Duration.ofSeconds(1); // 다른 노드의 쓰기가 집계에 보이기까지의 최대 시간, enabled 와 상관없이 적용된다.
+}
@@ -0,0 +1,41 @@
+package hello.itemservice.config;
+
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.event.ItemChangeStream;
+import hello.itemservice.repository.event.PublishingItemRepository;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 상품 변경 이벤트 스트림, ItemRepositoryDecorators 가 @Import 해서 저장소를 감쌀 때 사용한다.
+ * 구독하려면 ItemChangeStream 빈을 주입받아서 subscribe 한다.
+ */
+@Configuration
+@EnableConfigurationProperties(ItemChangeProperties.class)
+public class ItemChangeConfig {
+
+    private final ItemChangeProperties changeProperties;
+
+    public ItemChangeConfig(ItemChangeProperties changeProperties) {
+        this.changeProperties = changeProperties;
+    }
+
+    /**
+     * 종료 시 close() 로 구독 스레드들을 멈추도록 빈으로 등록한다.
+     */
+    @Bean(destroyMethod = "close")
+    public ItemChangeStream itemChangeStream() {
+        return new ItemChangeStream(changeProperties.getBufferSize());
+    }
+
+    /**
+     * 커밋된 save, update 를 발행하도록 저장소를 감싼다. item.changes.enabled=false 면 그대로 돌려준다.
+     */
+    public ItemRepository publishing(ItemRepository itemRepository) {
+        if (!changeProperties.isEnabled()) {
+            return itemRepository;
+        }
+        return new PublishingItemRepository(itemRepository, itemChangeStream());
+    }
+}
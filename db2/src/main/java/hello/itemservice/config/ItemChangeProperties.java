@@ -0,0 +1,15 @@
+package hello.itemservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * item.changes.* 설정
+ */
+@Data
+@ConfigurationProperties("item.changes")
+public class ItemChangeProperties {
+
+    private boolean enabled = true; // false 면 저장소가 변경 이벤트를 발행하지 않는다.
+    private int bufferSize = 1024; // 링 버퍼 크기(2의 거듭제곱), 가장 느린 구독자가 이만큼 밀리면 쓰는 쪽이 기다린다.
+}
@@ -0,0 +1,24 @@
+package hello.itemservice.config;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * item.datasource.* 설정, primary 는 spring.datasource.* 를 그대로 사용한다.
+ */
+@Data
+@ConfigurationProperties("item.datasource")
+public class ItemDataSourceProperties {
+
+    private final Replica replica = new Replica();
+
+    @Data
+    public static class Replica {
+        private String url; // 없으면 replica 를 사용하지 않는다.
+        private String username;
+        private String password;
+        private Duration connectionTimeout = Duration.ofMillis(500); // replica 장애 시 primary 로 넘어가기까지 기다리는 시간
+        private Duration retryInterval = Duration.ofSeconds(30); // 장애 후 replica 를 다시 시도하기까지의 시간
+    }
+}
@@ -0,0 +1,18 @@
+package hello.itemservice.config;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * item.journal.* 설정, 메모리 저장소(MemoryConfig)에서만 사용한다.
+ */
+@Data
+@ConfigurationProperties("item.journal")
+public class ItemJournalProperties {
+
+    private boolean enabled = false;
+    private Path directory = Path.of("data", "item-journal");
+    private Duration snapshotInterval = Duration.ofMinutes(10);
+}
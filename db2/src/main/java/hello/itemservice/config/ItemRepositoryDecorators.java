@@ -0,0 +1,65 @@
+package hello.itemservice.config;
+
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.cache.CachingItemRepository;
+import hello.itemservice.repository.metrics.MeteredItemRepository;
+import hello.itemservice.service.CoalescingItemService;
+import hello.itemservice.service.ItemService;
+import hello.itemservice.service.ItemServiceV1;
+import hello.itemservice.service.MeteredItemService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.support.TransactionOperations;
+
+/**
+ * 저장소 설정(MemoryConfig, JpaConfig ...)들이 공통으로 쓰는 데코레이터 조립
+ * 각 설정은 원본 저장소만 만들고, 메트릭, 변경 이벤트, 캐시와 서비스 데코레이터는 여기서 같은 순서로 감싼다.
+ *
+ * 저장소 : Caching -> Publishing -> Metered -> 원본 (캐시는 item.cache.enabled, 발행은 item.changes.enabled 일 때만)
+ * 서비스 : Metered -> Coalescing -> ItemServiceV1
+ */
+@Configuration
+@Import(ItemChangeConfig.class)
+@EnableConfigurationProperties(ItemCacheProperties.class)
+public class ItemRepositoryDecorators {
+
+    private final ItemCacheProperties cacheProperties;
+    private final ItemChangeConfig itemChangeConfig;
+    private final MeterRegistry meterRegistry;
+
+    public ItemRepositoryDecorators(ItemCacheProperties cacheProperties, ItemChangeConfig itemChangeConfig,
+                                    MeterRegistry meterRegistry) {
+        this.cacheProperties = cacheProperties;
+        this.itemChangeConfig = itemChangeConfig;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 원본 저장소를 메트릭, 변경 이벤트, 캐시 데코레이터로 감싼다.
+     * 메트릭이 가장 안쪽이라 캐시 적중은 원본 저장소 호출로 세지 않는다.
+     */
+    public ItemRepository decorate(ItemRepository itemRepository) {
+        ItemRepository decorated = itemChangeConfig.publishing(new MeteredItemRepository(itemRepository, meterRegistry));
+        if (!cacheProperties.isEnabled()) {
+            return decorated;
+        }
+        return new CachingItemRepository(decorated,
+                cacheProperties.getMaximumSize(), cacheProperties.getExpireAfterWrite(),
+                cacheProperties.getSearchMaximumRows(), meterRegistry);
+    }
+
+    /**
+     * 트랜잭션 매니저가 없는 메모리 저장소용 서비스
+     */
+    public ItemService itemService(ItemRepository itemRepository) {
+        return itemService(itemRepository, TransactionOperations.withoutTransaction());
+    }
+
+    public ItemService itemService(ItemRepository itemRepository, TransactionOperations transactionOperations) {
+        ItemService itemService = new ItemServiceV1(itemRepository, transactionOperations);
+        return new MeteredItemService(new CoalescingItemService(itemService, cacheProperties.getNegativeTtl()),
+                meterRegistry);
+    }
+}
@@ -0,0 +1,16 @@
+package hello.itemservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * item.shard.* 설정, 샤드 메모리 저장소(ShardedConfig)에서만 사용한다.
+ * 상품 수가 parallel-threshold 보다 적으면 검색을 샤드별로 나누지 않고 차례로 한다.
+ */
+@Data
+@ConfigurationProperties("item.shard")
+public class ItemShardProperties {
+
+    private int count = Runtime.getRuntime().availableProcessors();
+    private int parallelThreshold = 10_000;
+}
@@ -0,0 +1,18 @@
+package hello.itemservice.config;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * item.write-behind.* 설정
+ */
+@Data
+@ConfigurationProperties("item.write-behind")
+public class ItemWriteBehindProperties {
+
+    private boolean enabled = false;
+    private int batchSize = 500; // 대기열이 이만큼 차면 바로 반영한다.
+    private int capacity = 10_000; // 대기열 최대 크기, 가득 차면 쓰는 쪽이 기다린다.
+    private Duration flushInterval = Duration.ofMillis(100);
+}
@@ -0,0 +1,53 @@
+package hello.itemservice.config;
+
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.jdbctemplate.JdbcTemplateItemRepository;
+import hello.itemservice.service.ItemService;
+import javax.sql.DataSource;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * JPA 대신 NamedParameterJdbcTemplate 으로 SQL 을 직접 실행하는 저장소(JdbcTemplateItemRepository)를 사용한다.
+ * 테이블, 시퀀스는 JpaConfig 와 같은 것을 사용한다.
+ */
+@Configuration
+@Import({DataSourceConfig.class, ItemRepositoryDecorators.class})
+public class JdbcTemplateConfig {
+
+    private final DataSource dataSource;
+    private final ItemRepositoryDecorators decorators;
+    private final PlatformTransactionManager transactionManager;
+
+    public JdbcTemplateConfig(DataSource dataSource, ItemRepositoryDecorators decorators,
+                              PlatformTransactionManager transactionManager) {
+        this.dataSource = dataSource;
+        this.decorators = decorators;
+        this.transactionManager = transactionManager;
+    }
+
+    @Bean
+    public ItemService itemService() {
+        return decorators.itemService(itemRepository(), new TransactionTemplate(transactionManager));
+    }
+
+    /**
+     * 트랜잭션(@Transactional) 프록시가 적용되도록 JdbcTemplateItemRepository 를 빈으로 등록하고,
+     * 메트릭, 변경 이벤트, 캐시 데코레이터로 감싼 itemRepository 를 기본(@Primary)으로 사용한다.
+     */
+    @Bean
+    @Primary
+    public ItemRepository itemRepository() {
+        return decorators.decorate(jdbcTemplateItemRepository());
+    }
+
+    @Bean
+    public JdbcTemplateItemRepository jdbcTemplateItemRepository() {
+        return new JdbcTemplateItemRepository(dataSource);
+    }
+
+}
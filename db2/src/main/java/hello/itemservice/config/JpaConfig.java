@@ -2,30 +2,83 @@ package hello.itemservice.config;
 
 import hello.itemservice.repository.ItemRepository;
 import hello.itemservice.repository.jpa.JpaItemRepository;
+import hello.itemservice.repository.writebehind.WriteBehindItemRepository;
 import hello.itemservice.service.ItemService;
-import hello.itemservice.service.ItemServiceV1;
 import javax.persistence.EntityManager;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Configuration
+@Import({DataSourceConfig.class, ItemRepositoryDecorators.class})
+@EnableConfigurationProperties({ItemCacheProperties.class, ItemWriteBehindProperties.class})
 public class JpaConfig {
 
     private final EntityManager em;
+    private final ItemCacheProperties cacheProperties;
+    private final ItemWriteBehindProperties writeBehindProperties;
+    private final ItemRepositoryDecorators decorators;
+    private final PlatformTransactionManager transactionManager;
 
-    public JpaConfig(EntityManager em) {
+    public JpaConfig(EntityManager em, ItemCacheProperties cacheProperties,
+                     ItemWriteBehindProperties writeBehindProperties, ItemRepositoryDecorators decorators,
+                     PlatformTransactionManager transactionManager) {
         this.em = em;
+        this.cacheProperties = cacheProperties;
+        this.writeBehindProperties = writeBehindProperties;
+        this.decorators = decorators;
+        this.transactionManager = transactionManager;
     }
 
+    /**
+     * 변경 트랜잭션은 서비스에서 시작한다.
+     * write-behind 는 반영할 때 자기 트랜잭션을 쓰므로, 반영을 기다리는 동안 커넥션을 붙잡지 않게 서비스 트랜잭션을 걸지 않는다.
+     */
     @Bean
     public ItemService itemService() {
-        return new ItemServiceV1(itemRepository());
+        TransactionOperations transactionOperations = writeBehindProperties.isEnabled()
+                ? TransactionOperations.withoutTransaction()
+                : new TransactionTemplate(transactionManager);
+        return decorators.itemService(itemRepository(), transactionOperations);
     }
 
+    /**
+     * 트랜잭션(@Transactional) 프록시가 적용되도록 JpaItemRepository 를 빈으로 등록하고,
+     * 메트릭, 변경 이벤트, 캐시, write-behind 데코레이터로 감싼 itemRepository 를 기본(@Primary)으로 사용한다.
+     */
     @Bean
+    @Primary
     public ItemRepository itemRepository() {
-        return new JpaItemRepository(em);
+        if (writeBehindProperties.isEnabled()) {
+            return writeBehindItemRepository();
+        }
+        return decorators.decorate(jpaItemRepository());
     }
 
-}
+    @Bean
+    public JpaItemRepository jpaItemRepository() {
+        return new JpaItemRepository(em, cacheProperties.getAggregatesTtl());
+    }
 
+    /**
+     * 종료 시 close() 로 남은 쓰기를 반영하도록 빈으로 등록한다.
+     * 트랜잭션 매니저보다 먼저 종료된다.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "item.write-behind", name = "enabled", havingValue = "true")
+    public WriteBehindItemRepository writeBehindItemRepository() {
+        // 반영하는 트랜잭션이 커밋된 뒤에 발행되도록 write-behind 안쪽을 감싼다.
+        // 캐시도 안쪽에 두어서, 반영 전의 값(대기 중인 수정을 덮어쓴 조회 결과)은 캐시되지 않고 반영이 커밋되면 무효화된다.
+        return new WriteBehindItemRepository(decorators.decorate(jpaItemRepository()),
+                new TransactionTemplate(transactionManager),
+                writeBehindProperties.getBatchSize(), writeBehindProperties.getCapacity(),
+                writeBehindProperties.getFlushInterval());
+    }
+
+}
@@ -1,23 +1,48 @@
 package hello.itemservice.config;
 
 import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.memory.ItemJournal;
 import hello.itemservice.repository.memory.MemoryItemRepository;
 import hello.itemservice.service.ItemService;
-import hello.itemservice.service.ItemServiceV1;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
 
 @Configuration
+@Import(ItemRepositoryDecorators.class)
+@EnableConfigurationProperties(ItemJournalProperties.class)
 public class MemoryConfig {
 
+    private final ItemJournalProperties journalProperties;
+    private final ItemRepositoryDecorators decorators;
+
+    public MemoryConfig(ItemJournalProperties journalProperties, ItemRepositoryDecorators decorators) {
+        this.journalProperties = journalProperties;
+        this.decorators = decorators;
+    }
+
     @Bean
     public ItemService itemService() {
-        return new ItemServiceV1(itemRepository());
+        return decorators.itemService(itemRepository());
     }
 
     @Bean
     public ItemRepository itemRepository() {
-        return new MemoryItemRepository();
+        MemoryItemRepository memoryItemRepository = journalProperties.isEnabled()
+                ? new MemoryItemRepository(itemJournal())
+                : new MemoryItemRepository();
+        return decorators.decorate(memoryItemRepository);
+    }
+
+    /**
+     * 종료 시 close() 로 마지막 스냅샷을 쓰도록 빈으로 등록한다.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "item.journal", name = "enabled", havingValue = "true")
+    public ItemJournal itemJournal() {
+        return new ItemJournal(journalProperties.getDirectory(), journalProperties.getSnapshotInterval());
     }
 
 }
@@ -0,0 +1,62 @@
+package hello.itemservice.config;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sql.DataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 읽기 전용 트랜잭션(@Transactional(readOnly = true))은 replica 로, 나머지는 primary 로 보낸다.
+ * replica 커넥션을 얻지 못하면 primary 를 사용하고, retryIntervalMillis 동안은 replica 를 다시 시도하지 않는다.
+ *
+ * 트랜잭션 시작 시점에는 readOnly 여부가 아직 설정되지 않았으므로,
+ * 실제 커넥션을 첫 SQL 실행 시점에 얻도록 LazyConnectionDataSourceProxy 로 감싸서 사용해야 한다.
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractDataSource {
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final long retryIntervalMillis;
+
+    // replica 를 다시 시도할 수 있는 시각, 0 이면 정상
+    private final AtomicLong replicaRetryAt = new AtomicLong();
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, long retryIntervalMillis) {
+        this.primary = primary;
+        this.replica = replica;
+        this.retryIntervalMillis = retryIntervalMillis;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (useReplica()) {
+            try {
+                Connection connection = replica.getConnection();
+                replicaRetryAt.set(0);
+                return connection;
+            } catch (SQLException | RuntimeException e) {
+                // 커넥션 풀 초기화 실패(HikariPool.PoolInitializationException)는 RuntimeException 이다.
+                replicaRetryAt.set(System.currentTimeMillis() + retryIntervalMillis);
+                log.warn("replica unavailable, fallback to primary for {} ms: {}", retryIntervalMillis, e.toString());
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    private boolean useReplica() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return false;
+        }
+        long retryAt = replicaRetryAt.get();
+        return retryAt == 0 || System.currentTimeMillis() >= retryAt;
+    }
+}
@@ -0,0 +1,40 @@
+package hello.itemservice.config;
+
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.memory.ShardedItemRepository;
+import hello.itemservice.service.ItemService;
+import java.util.concurrent.ForkJoinPool;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+/**
+ * 상품을 id 로 여러 샤드에 나눠 저장하는 메모리 저장소(ShardedItemRepository)를 사용한다.
+ * 샤드 검색은 공용 fork-join 풀에서 실행한다.
+ */
+@Configuration
+@Import(ItemRepositoryDecorators.class)
+@EnableConfigurationProperties(ItemShardProperties.class)
+public class ShardedConfig {
+
+    private final ItemShardProperties shardProperties;
+    private final ItemRepositoryDecorators decorators;
+
+    public ShardedConfig(ItemShardProperties shardProperties, ItemRepositoryDecorators decorators) {
+        this.shardProperties = shardProperties;
+        this.decorators = decorators;
+    }
+
+    @Bean
+    public ItemService itemService() {
+        return decorators.itemService(itemRepository());
+    }
+
+    @Bean
+    public ItemRepository itemRepository() {
+        return decorators.decorate(new ShardedItemRepository(
+                shardProperties.getCount(), ForkJoinPool.commonPool(), shardProperties.getParallelThreshold()));
+    }
+
+}
@@ -5,6 +5,8 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Version;
 import lombok.Data;
 
 @Data
@@ -12,7 +14,10 @@ import lombok.Data;
 public class Item {
 
     @Id // 테이블의 PK와 해당 필드를 매핑한다.
-    @GeneratedValue(strategy = GenerationType.IDENTITY) // PK 생성 값을 데이터베이스에서 생성하는 `IDENTITY`방식을 사용한다. 예 : MySQL auto increment
+    // `IDENTITY`방식(예 : MySQL auto increment)은 INSERT 를 해야 PK를 알 수 있어서, JDBC 배치 INSERT 가 꺼진다.
+    // 그래서 시퀀스를 사용하고, allocationSize 만큼 PK를 미리 할당받아(pooled) 시퀀스 조회 횟수도 줄인다.
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "item_seq_generator")
+    @SequenceGenerator(name = "item_seq_generator", sequenceName = "item_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "item_name", length = 10) // 객체의 필드를 테이블의 컬럼과 매핑한다.
@@ -23,6 +28,11 @@ public class Item {
     private Integer price;
     private Integer quantity;
 
+    // 낙관적 락 : 수정할 때마다 1씩 증가하고, UPDATE 시 조회했던 버전과 같을 때만 반영된다.
+    // 다른 트랜잭션이 먼저 수정했으면 OptimisticLockException 이 발생한다.
+    @Version
+    private Long version;
+
     // JPA는 public 또는 protected의 기본 생성자가 필수이다.
     // 참고로, 이렇게 public 또는 protected의 생성자가 있으면, 프록시 기술을 사용하기 편하다.
     public Item() {
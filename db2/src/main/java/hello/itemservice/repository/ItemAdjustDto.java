@@ -0,0 +1,17 @@
+package hello.itemservice.repository;
+
+import lombok.Data;
+
+@Data
+public class ItemAdjustDto {
+    private Integer priceRate; // 가격 변경률(%), 예 : -10 이면 10% 인하
+    private Integer quantityDelta; // 수량 증감
+
+    public ItemAdjustDto() {
+    }
+
+    public ItemAdjustDto(Integer priceRate, Integer quantityDelta) {
+        this.priceRate = priceRate;
+        this.quantityDelta = quantityDelta;
+    }
+}
@@ -0,0 +1,48 @@
+package hello.itemservice.repository;
+
+import lombok.Data;
+
+/**
+ * 전체 상품 집계 : 상품 수, 재고 금액 합계(price * quantity), 가격 구간별 상품 수
+ * 가격 구간은 PRICE_BUCKET_BOUNDS 로 나눈다. [~ 1,000), [1,000 ~ 10,000), [10,000 ~ 100,000), [100,000 ~)
+ * 가격이나 수량이 없는 상품은 상품 수에만 포함된다. (가격이 없으면 구간에도 포함되지 않는다.)
+ */
+@Data
+public class ItemAggregatesDto {
+
+    public static final int[] PRICE_BUCKET_BOUNDS = {1_000, 10_000, 100_000};
+
+    private long itemCount;
+    private long inventoryValue;
+    private long[] priceHistogram = new long[PRICE_BUCKET_BOUNDS.length + 1];
+
+    public ItemAggregatesDto() {
+    }
+
+    public ItemAggregatesDto(long itemCount, long inventoryValue, long[] priceHistogram) {
+        this.itemCount = itemCount;
+        this.inventoryValue = inventoryValue;
+        this.priceHistogram = priceHistogram;
+    }
+
+    /**
+     * 상품 하나를 더한다. 전체를 훑어서 다시 계산할 때 사용한다.
+     */
+    public void add(Integer price, Integer quantity) {
+        itemCount++;
+        if (price != null && quantity != null) {
+            inventoryValue += (long) price * quantity;
+        }
+        if (price != null) {
+            priceHistogram[bucketOf(price)]++;
+        }
+    }
+
+    public static int bucketOf(int price) {
+        int bucket = 0;
+        while (bucket < PRICE_BUCKET_BOUNDS.length && price >= PRICE_BUCKET_BOUNDS[bucket]) {
+            bucket++;
+        }
+        return bucket;
+    }
+}
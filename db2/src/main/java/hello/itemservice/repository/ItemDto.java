@@ -0,0 +1,25 @@
+package hello.itemservice.repository;
+
+import lombok.Data;
+
+/**
+ * 조회 화면 전용 DTO
+ * JPA 에서는 생성자 프로젝션(select new ...)으로 바로 조회하므로, 영속성 컨텍스트에 엔티티와 스냅샷이 남지 않는다.
+ */
+@Data
+public class ItemDto {
+    private Long id;
+    private String itemName;
+    private Integer price;
+    private Integer quantity;
+
+    public ItemDto() {
+    }
+
+    public ItemDto(Long id, String itemName, Integer price, Integer quantity) {
+        this.id = id;
+        this.itemName = itemName;
+        this.price = price;
+        this.quantity = quantity;
+    }
+}
@@ -2,17 +2,44 @@ package hello.itemservice.repository;
 
 import hello.itemservice.domain.Item;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface ItemRepository {
 
     Item save(Item item);
 
+    List<Item> saveAll(Collection<Item> items);
+
     void update(Long itemId, ItemUpdateDto updateParam);
 
+    int updateAll(Map<Long, ItemUpdateDto> updateParams);
+
+    /**
+     * 검색 조건(itemName, maxPrice)에 맞는 모든 상품을 조정한다. 페이지(afterId, beforeId, size)는 무시한다.
+     */
+    int adjustAll(ItemSearchCond cond, ItemAdjustDto adjustParam);
+
     Optional<Item> findById(Long id);
 
     List<Item> findAll(ItemSearchCond cond);
 
+    Optional<ItemDto> findDtoById(Long id);
+
+    List<ItemDto> findAllDto(ItemSearchCond cond);
+
+    void forEachDto(ItemSearchCond cond, Consumer<ItemDto> action);
+
+    /**
+     * 전체 상품 집계, 저장소가 따로 관리하지 않으면 전체를 훑어서 계산한다.
+     */
+    default ItemAggregatesDto aggregates() {
+        ItemAggregatesDto aggregates = new ItemAggregatesDto();
+        forEachDto(new ItemSearchCond(), item -> aggregates.add(item.getPrice(), item.getQuantity()));
+        return aggregates;
+    }
+
 }
@@ -8,6 +8,12 @@ public class ItemSearchCond {
     private String itemName;
     private Integer maxPrice;
 
+    // 키셋(seek) 페이징 : afterId 다음(다음 페이지) 또는 beforeId 이전(이전 페이지)의 상품을 id 순으로 size 개만큼 조회한다.
+    // size 가 없으면 전체를 조회한다.
+    private Long afterId;
+    private Long beforeId;
+    private Integer size;
+
     public ItemSearchCond() {
     }
 
@@ -7,6 +7,7 @@ public class ItemUpdateDto {
     private String itemName;
     private Integer price;
     private Integer quantity;
+    private Long version; // 수정 폼을 열 때의 버전, 없으면 버전 확인 없이 수정한다.
 
     public ItemUpdateDto() {
     }
@@ -16,4 +17,9 @@ public class ItemUpdateDto {
         this.price = price;
         this.quantity = quantity;
     }
+
+    public ItemUpdateDto(String itemName, Integer price, Integer quantity, Long version) {
+        this(itemName, price, quantity);
+        this.version = version;
+    }
 }
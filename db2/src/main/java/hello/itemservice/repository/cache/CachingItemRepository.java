@@ -0,0 +1,319 @@
+package hello.itemservice.repository.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAdjustDto;
+import hello.itemservice.repository.ItemAggregatesDto;
+import hello.itemservice.repository.ItemDto;
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemUpdateDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * 단건 조회(findById, findDtoById)와 목록 검색(findAllDto) 결과를 캐시하는 ItemRepository 데코레이터
+ * 어떤 ItemRepository 구현체든 감쌀 수 있다.
+ * 단건은 크기와 시간 기준으로 제거되고, save, update 시 해당 상품의 캐시를 무효화한다.
+ * 검색 결과는 결과 행 수 기준으로 제거되고, 쓰기마다 올라가는 epoch 로 무효화한다.
+ * 적중/실패/제거 통계는 cache.* 메트릭(cache=item, itemDto, itemSearch)으로 등록한다.
+ * 캐시에는 복사본을 저장하고 호출한 쪽에도 복사본을 돌려주므로, 호출한 쪽에서 값을 바꿔도 캐시는 바뀌지 않는다.
+ */
+public class CachingItemRepository implements ItemRepository {
+
+    private final ItemRepository target;
+    private final Cache<Long, Item> itemCache;
+    private final Cache<Long, ItemDto> itemDtoCache;
+
+    // 검색 결과 캐시 : 쓰기가 일어날 때마다 epoch 를 올리고, 현재 epoch 와 다른 결과는 사용하지 않는다.
+    private final Cache<ItemSearchCond, SearchResult> searchCache;
+    private final AtomicLong writeEpoch = new AtomicLong();
+    // epoch 가 지난 결과는 캐시에 있어도 실패로 세야 해서, 적중/실패는 따로 센다.
+    private final LongAdder searchHitCount = new LongAdder();
+    private final LongAdder searchMissCount = new LongAdder();
+
+    public CachingItemRepository(ItemRepository target, long maximumSize, Duration expireAfterWrite,
+                                 long searchMaximumRows, MeterRegistry meterRegistry) {
+        this.target = target;
+        this.itemCache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        this.itemDtoCache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        // 메모리는 결과 목록의 크기에 비례하므로, 캐시된 전체 행 수로 제한한다.
+        this.searchCache = Caffeine.newBuilder()
+                .maximumWeight(searchMaximumRows)
+                .<ItemSearchCond, SearchResult>weigher((cond, result) -> Math.max(1, result.items.size()))
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, itemCache, "item");
+        CaffeineCacheMetrics.monitor(meterRegistry, itemDtoCache, "itemDto");
+        new SearchCacheMetrics(this).bindTo(meterRegistry);
+    }
+
+    @Override
+    public Item save(Item item) {
+        Item savedItem = target.save(item);
+        evict(Set.of(savedItem.getId()));
+        return savedItem;
+    }
+
+    @Override
+    public List<Item> saveAll(Collection<Item> items) {
+        // 새로 생긴 id 라 캐시에 없지만, 트랜잭션 안에서 조회되어 캐시된 경우를 위해 커밋/롤백 후에 무효화한다.
+        List<Item> savedItems = target.saveAll(items);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(savedItems.stream().map(Item::getId).collect(Collectors.toList()));
+        }
+        return savedItems;
+    }
+
+    @Override
+    public void update(Long itemId, ItemUpdateDto updateParam) {
+        // 충돌로 실패했다면 캐시된 값이 오래된 것이므로, 실패해도 무효화한다.
+        try {
+            target.update(itemId, updateParam);
+        } finally {
+            evict(Set.of(itemId));
+        }
+    }
+
+    @Override
+    public int updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        try {
+            return target.updateAll(updateParams);
+        } finally {
+            evict(updateParams.keySet());
+        }
+    }
+
+    @Override
+    public int adjustAll(ItemSearchCond cond, ItemAdjustDto adjustParam) {
+        // 어떤 상품이 바뀌었는지 알 수 없으므로 전체를 무효화한다.
+        int count = target.adjustAll(cond, adjustParam);
+        evictAll();
+        return count;
+    }
+
+    @Override
+    public Optional<Item> findById(Long id) {
+        // 호출한 쪽에서 상품을 수정해도 캐시가 오염되지 않게, 복사본을 저장하고 복사본을 돌려준다.
+        Item item = itemCache.get(id, key -> target.findById(key).map(CachingItemRepository::copy).orElse(null));
+        return Optional.ofNullable(item).map(CachingItemRepository::copy);
+    }
+
+    @Override
+    public List<Item> findAll(ItemSearchCond cond) {
+        return target.findAll(cond);
+    }
+
+    @Override
+    public Optional<ItemDto> findDtoById(Long id) {
+        // findById 와 같이 복사본을 저장하고 복사본을 돌려준다.
+        ItemDto item = itemDtoCache.get(id, key -> target.findDtoById(key).map(CachingItemRepository::copy).orElse(null));
+        return Optional.ofNullable(item).map(CachingItemRepository::copy);
+    }
+
+    /**
+     * 검색 결과는 여러 요청이 같이 사용하므로, 요청마다 상품을 복사해서 돌려준다.
+     */
+    @Override
+    public List<ItemDto> findAllDto(ItemSearchCond cond) {
+        ItemSearchCond key = normalize(cond);
+        long epoch = writeEpoch.get();
+        SearchResult cached = searchCache.getIfPresent(key);
+        if (cached != null && cached.epoch == epoch) {
+            searchHitCount.increment();
+            return copyAll(cached.items);
+        }
+        searchMissCount.increment();
+
+        // 조회 전에 읽은 epoch 로 저장하므로, 조회 중에 쓰기가 일어나면 이 결과는 다시 사용되지 않는다.
+        List<ItemDto> items = target.findAllDto(cond);
+        searchCache.asMap().merge(key, new SearchResult(epoch, copyAll(items)),
+                (oldResult, newResult) -> oldResult.epoch >= newResult.epoch ? oldResult : newResult);
+        return items;
+    }
+
+    @Override
+    public void forEachDto(ItemSearchCond cond, Consumer<ItemDto> action) {
+        target.forEachDto(cond, action);
+    }
+
+    @Override
+    public ItemAggregatesDto aggregates() {
+        return target.aggregates();
+    }
+
+    /**
+     * 적중/실패/제거 횟수 등 캐시 통계
+     */
+    public CacheStats itemStats() {
+        return itemCache.stats();
+    }
+
+    public CacheStats itemDtoStats() {
+        return itemDtoCache.stats();
+    }
+
+    /**
+     * 검색 결과 캐시 통계 (제거 횟수 포함)
+     */
+    public CacheStats searchStats() {
+        CacheStats stats = searchCache.stats();
+        return CacheStats.of(searchHitCount.sum(), searchMissCount.sum(),
+                stats.loadSuccessCount(), stats.loadFailureCount(), stats.totalLoadTime(),
+                stats.evictionCount(), stats.evictionWeight());
+    }
+
+    public ItemRepository getTarget() {
+        return target;
+    }
+
+    /**
+     * 지금 바로 무효화하고, 트랜잭션 안이면 커밋/롤백 후에 한 번 더 무효화한다.
+     * 커밋 전에 다른 스레드가 이전 값을 다시 캐시하거나, 롤백된 값이 캐시에 남는 것을 막는다.
+     */
+    private void evict(Collection<Long> ids) {
+        itemCache.invalidateAll(ids);
+        itemDtoCache.invalidateAll(ids);
+        writeEpoch.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    itemCache.invalidateAll(ids);
+                    itemDtoCache.invalidateAll(ids);
+                    writeEpoch.incrementAndGet();
+                }
+            });
+        }
+    }
+
+    private void evictAll() {
+        itemCache.invalidateAll();
+        itemDtoCache.invalidateAll();
+        writeEpoch.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    itemCache.invalidateAll();
+                    itemDtoCache.invalidateAll();
+                    writeEpoch.incrementAndGet();
+                }
+            });
+        }
+    }
+
+    /**
+     * 캐시 키로 쓸 검색 조건 복사본, 빈 상품명은 조건 없음(null)과 같게 본다.
+     */
+    private static ItemSearchCond normalize(ItemSearchCond cond) {
+        ItemSearchCond key = new ItemSearchCond(
+                ObjectUtils.isEmpty(cond.getItemName()) ? null : cond.getItemName(), cond.getMaxPrice());
+        key.setAfterId(cond.getAfterId());
+        key.setBeforeId(cond.getBeforeId());
+        key.setSize(cond.getSize());
+        return key;
+    }
+
+    /**
+     * 검색 결과 캐시의 통계를 cache.* 메트릭으로 등록한다. epoch 가 지난 결과는 실패로 세는 searchStats 와 같은 값이다.
+     */
+    private static class SearchCacheMetrics extends CacheMeterBinder<CachingItemRepository> {
+
+        SearchCacheMetrics(CachingItemRepository repository) {
+            super(repository, "itemSearch", Tags.empty());
+        }
+
+        @Override
+        protected Long size() {
+            CachingItemRepository repository = getCache();
+            return repository != null ? repository.searchCache.estimatedSize() : null;
+        }
+
+        @Override
+        protected long hitCount() {
+            CachingItemRepository repository = getCache();
+            return repository != null ? repository.searchHitCount.sum() : 0;
+        }
+
+        @Override
+        protected Long missCount() {
+            CachingItemRepository repository = getCache();
+            return repository != null ? repository.searchMissCount.sum() : null;
+        }
+
+        @Override
+        protected Long evictionCount() {
+            CachingItemRepository repository = getCache();
+            return repository != null ? repository.searchCache.stats().evictionCount() : null;
+        }
+
+        @Override
+        protected long putCount() {
+            // 실패할 때마다 조회한 결과를 저장한다.
+            CachingItemRepository repository = getCache();
+            return repository != null ? repository.searchMissCount.sum() : 0;
+        }
+
+        @Override
+        protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+        }
+    }
+
+    private static class SearchResult {
+
+        private final long epoch;
+        private final List<ItemDto> items;
+
+        SearchResult(long epoch, List<ItemDto> items) {
+            this.epoch = epoch;
+            this.items = items;
+        }
+    }
+
+    private static List<ItemDto> copyAll(List<ItemDto> items) {
+        List<ItemDto> copies = new ArrayList<>(items.size());
+        for (ItemDto item : items) {
+            copies.add(copy(item));
+        }
+        return copies;
+    }
+
+    private static ItemDto copy(ItemDto item) {
+        return new ItemDto(item.getId(), item.getItemName(), item.getPrice(), item.getQuantity());
+    }
+
+    private static Item copy(Item item) {
+        Item copy = new Item(item.getItemName(), item.getPrice(), item.getQuantity());
+        copy.setId(item.getId());
+        copy.setVersion(item.getVersion());
+        return copy;
+    }
+}
@@ -0,0 +1,39 @@
+package hello.itemservice.repository.event;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 상품 변경 이벤트, ItemChangeStream 의 링 버퍼 칸에 미리 만들어 두고 재사용한다.
+ * 구독자에게 넘어간 뒤 다시 채워지므로, onChanges 밖에서 쓰려면 필요한 값을 복사해 둔다.
+ *
+ * ADJUST 는 조건으로 여러 상품을 한 번에 조정한 경우라 itemId 가 없다. 필요하면 다시 조회한다.
+ * SAVE, UPDATE 의 값과 version 은 커밋된 상품의 값과 버전이다.
+ * 같은 상품의 이벤트가 version 순서대로 온다는 보장은 없으므로, 구독자는 version 으로 오래된 이벤트를 버린다.
+ */
+@Getter
+@ToString
+public class ItemChangeEvent {
+
+    public enum Type {
+        SAVE, UPDATE, ADJUST
+    }
+
+    private long sequence;
+    private Type type;
+    private Long itemId;
+    private String itemName;
+    private Integer price;
+    private Integer quantity;
+    private Long version;
+
+    void set(long sequence, Type type, Long itemId, String itemName, Integer price, Integer quantity, Long version) {
+        this.sequence = sequence;
+        this.type = type;
+        this.itemId = itemId;
+        this.itemName = itemName;
+        this.price = price;
+        this.quantity = quantity;
+        this.version = version;
+    }
+}
@@ -0,0 +1,17 @@
+package hello.itemservice.repository.event;
+
+import java.util.List;
+
+/**
+ * ItemChangeStream 구독자, 구독마다 전용 스레드에서 순서대로 호출된다.
+ */
+@FunctionalInterface
+public interface ItemChangeListener {
+
+    /**
+     * 그동안 쌓인 이벤트를 발행 순서대로 한 번에 받는다. (최대 버퍼 크기만큼)
+     * 발행 순서는 같은 상품에 대해서도 커밋 순서와 다를 수 있으니, 상품마다 version 이 더 큰 이벤트만 반영한다.
+     * 반환하기 전까지 이 이벤트들이 있는 칸은 덮어쓰지 않는다.
+     */
+    void onChanges(List<ItemChangeEvent> events);
+}
@@ -0,0 +1,185 @@
+package hello.itemservice.repository.event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 상품 변경 이벤트를 구독자들에게 전달하는 프로세스 내 스트림 (change data capture)
+ *
+ * - 이벤트는 미리 만들어 둔 링 버퍼(크기는 2의 거듭제곱)의 칸에 값만 채워서 발행한다. 발행할 때 객체를 만들지 않는다.
+ * - 쓰는 쪽은 하나다. (single writer) 변경은 여러 스레드에서 커밋되므로 짧은 락으로 한 번에 하나씩 칸을 채우고,
+ *   cursor(volatile)를 올려서 발행한다. 읽는 쪽은 락 없이 cursor 까지 읽는다.
+ * - 구독마다 전용 스레드와 처리한 sequence 를 가진다. 구독자는 그동안 쌓인 이벤트를 한 번에 받는다. (batch)
+ * - 가장 느린 구독자가 아직 처리하지 않은 칸은 덮어쓰지 않는다. 버퍼가 가득 차면 발행하는 쪽이 기다린다. (backpressure)
+ *   구독자가 멈추면 쓰기도 멈추므로, onChanges 는 오래 걸리는 일을 다른 곳에 넘기고 빨리 반환해야 한다.
+ * - 구독하기 전에 발행된 이벤트는 받지 않는다.
+ */
+@Slf4j
+public class ItemChangeStream implements AutoCloseable {
+
+    private static final int SPIN_TRIES = 100;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final ItemChangeEvent[] entries;
+    private final int mask;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile long cursor = -1; // 마지막으로 발행한 sequence
+    private long gatingSequence = -1; // 구독자들이 처리한 sequence 의 최솟값, 버퍼가 찰 때만 다시 계산한다. (writeLock)
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    public ItemChangeStream(int bufferSize) {
+        if (bufferSize <= 0 || Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("bufferSize must be a power of 2: " + bufferSize);
+        }
+        this.entries = new ItemChangeEvent[bufferSize];
+        for (int i = 0; i < bufferSize; i++) {
+            entries[i] = new ItemChangeEvent();
+        }
+        this.mask = bufferSize - 1;
+    }
+
+    public void publish(ItemChangeEvent.Type type, Long itemId, String itemName, Integer price, Integer quantity,
+                        Long version) {
+        writeLock.lock();
+        try {
+            long sequence = cursor + 1;
+            awaitCapacity(sequence);
+            entries[(int) sequence & mask].set(sequence, type, itemId, itemName, price, quantity, version);
+            cursor = sequence;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 가장 느린 구독자가 sequence - bufferSize 까지 처리할 때까지 기다린다.
+     */
+    private void awaitCapacity(long sequence) {
+        long wrapPoint = sequence - entries.length;
+        while (wrapPoint > gatingSequence) {
+            gatingSequence = minimumSequence();
+            if (wrapPoint > gatingSequence) {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    }
+
+    private long minimumSequence() {
+        long minimum = cursor;
+        for (Subscription subscription : subscriptions) {
+            minimum = Math.min(minimum, subscription.sequence.get());
+        }
+        return minimum;
+    }
+
+    public Subscription subscribe(String name, ItemChangeListener listener) {
+        writeLock.lock();
+        try {
+            Subscription subscription = new Subscription(name, listener, cursor);
+            subscriptions.add(subscription);
+            subscription.thread.start();
+            return subscription;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public long getCursor() {
+        return cursor;
+    }
+
+    public int getBufferSize() {
+        return entries.length;
+    }
+
+    @Override
+    public void close() {
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+
+    public final class Subscription implements AutoCloseable {
+
+        private final ItemChangeListener listener;
+        private final AtomicLong sequence; // 처리를 끝낸 마지막 sequence
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        private Subscription(String name, ItemChangeListener listener, long sequence) {
+            this.listener = listener;
+            this.sequence = new AtomicLong(sequence);
+            this.thread = new Thread(this::run, "item-change-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        /**
+         * 처리를 끝낸 마지막 sequence, 발행한 쪽의 cursor 와의 차이가 밀린 이벤트 수다.
+         */
+        public long getSequence() {
+            return sequence.get();
+        }
+
+        private void run() {
+            List<ItemChangeEvent> batch = new ArrayList<>(entries.length);
+            List<ItemChangeEvent> events = Collections.unmodifiableList(batch);
+            long processed = sequence.get();
+            int idle = 0;
+            while (running) {
+                long available = cursor;
+                if (available <= processed) {
+                    idle = idle(idle);
+                    continue;
+                }
+                idle = 0;
+
+                batch.clear();
+                for (long next = processed + 1; next <= available; next++) {
+                    batch.add(entries[(int) next & mask]);
+                }
+                try {
+                    listener.onChanges(events);
+                } catch (RuntimeException e) {
+                    log.warn("item change listener failed: {} events from sequence {}", batch.size(), processed + 1, e);
+                }
+                processed = available;
+                // 처리한 칸을 발행하는 쪽에 돌려준다.
+                sequence.lazySet(processed);
+            }
+        }
+
+        /**
+         * 잠깐 돌면서 기다리다가, 그래도 없으면 자는 시간을 늘려간다. (최대 1ms)
+         * 쓰기가 없을 때 구독 스레드가 쓰는 쪽과 CPU 를 다투지 않게 한다.
+         */
+        private int idle(int idle) {
+            if (idle < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else {
+                int shift = Math.min(idle - SPIN_TRIES, 5);
+                LockSupport.parkNanos(Math.min(PARK_NANOS << shift, MAX_IDLE_PARK_NANOS));
+            }
+            return idle + 1;
+        }
+
+        /**
+         * 구독을 끝낸다. 발행하는 쪽은 더 이상 이 구독자를 기다리지 않는다.
+         */
+        @Override
+        public void close() {
+            subscriptions.remove(this);
+            running = false;
+            LockSupport.unpark(thread);
+        }
+    }
+}
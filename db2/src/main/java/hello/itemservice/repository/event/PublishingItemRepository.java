@@ -0,0 +1,176 @@
+package hello.itemservice.repository.event;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAdjustDto;
+import hello.itemservice.repository.ItemAggregatesDto;
+import hello.itemservice.repository.ItemDto;
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemUpdateDto;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * save, update 로 바뀐 상품을 ItemChangeStream 에 발행하는 ItemRepository 데코레이터
+ * 어떤 ItemRepository 구현체든 감쌀 수 있다.
+ *
+ * 트랜잭션 안이면 커밋된 뒤에 발행하고, 롤백되면 발행하지 않는다. 트랜잭션이 없으면(메모리 저장소) 바로 발행한다.
+ * save 는 호출 시점에 값을 복사해 두므로, 커밋 전에 호출한 쪽이 상품을 바꿔도 이벤트는 바뀌지 않는다.
+ * update 는 id 만 들고 있다가 커밋된 뒤에 다시 조회해서, 커밋된 값과 버전을 발행한다.
+ *
+ * 같은 상품을 동시에 바꾼 트랜잭션들의 이벤트는 커밋 순서와 다르게 발행될 수 있다.
+ * 구독자는 상품마다 받은 가장 큰 version 을 기억하고, 그보다 작거나 같은 version 의 이벤트는 버린다.
+ */
+public class PublishingItemRepository implements ItemRepository {
+
+    private final ItemRepository target;
+    private final ItemChangeStream changeStream;
+
+    public PublishingItemRepository(ItemRepository target, ItemChangeStream changeStream) {
+        this.target = target;
+        this.changeStream = changeStream;
+    }
+
+    @Override
+    public Item save(Item item) {
+        Item savedItem = target.save(item);
+        publishAfterCommit(List.of(saved(savedItem)));
+        return savedItem;
+    }
+
+    @Override
+    public List<Item> saveAll(Collection<Item> items) {
+        List<Item> savedItems = target.saveAll(items);
+        List<Change> changes = new ArrayList<>(savedItems.size());
+        for (Item savedItem : savedItems) {
+            changes.add(saved(savedItem));
+        }
+        publishAfterCommit(changes);
+        return savedItems;
+    }
+
+    @Override
+    public void update(Long itemId, ItemUpdateDto updateParam) {
+        target.update(itemId, updateParam);
+        publishAfterCommit(List.of(updated(itemId)));
+    }
+
+    @Override
+    public int updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        int count = target.updateAll(updateParams);
+        List<Change> changes = new ArrayList<>(updateParams.size());
+        for (Long itemId : updateParams.keySet()) {
+            changes.add(updated(itemId));
+        }
+        publishAfterCommit(changes);
+        return count;
+    }
+
+    @Override
+    public int adjustAll(ItemSearchCond cond, ItemAdjustDto adjustParam) {
+        // 어떤 상품이 바뀌었는지 알 수 없으므로 id 없이 한 건만 발행한다.
+        int count = target.adjustAll(cond, adjustParam);
+        if (count > 0) {
+            publishAfterCommit(List.of(new Change(ItemChangeEvent.Type.ADJUST, null, null, null, null, null)));
+        }
+        return count;
+    }
+
+    @Override
+    public Optional<Item> findById(Long id) {
+        return target.findById(id);
+    }
+
+    @Override
+    public List<Item> findAll(ItemSearchCond cond) {
+        return target.findAll(cond);
+    }
+
+    @Override
+    public Optional<ItemDto> findDtoById(Long id) {
+        return target.findDtoById(id);
+    }
+
+    @Override
+    public List<ItemDto> findAllDto(ItemSearchCond cond) {
+        return target.findAllDto(cond);
+    }
+
+    @Override
+    public void forEachDto(ItemSearchCond cond, Consumer<ItemDto> action) {
+        target.forEachDto(cond, action);
+    }
+
+    @Override
+    public ItemAggregatesDto aggregates() {
+        return target.aggregates();
+    }
+
+    public ItemRepository getTarget() {
+        return target;
+    }
+
+    private void publishAfterCommit(List<Change> changes) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(changes);
+                }
+            });
+        } else {
+            publish(changes);
+        }
+    }
+
+    private void publish(List<Change> changes) {
+        for (Change change : changes) {
+            if (change.type == ItemChangeEvent.Type.UPDATE) {
+                // 커밋된 값과 버전, 그 사이에 삭제되었으면 발행하지 않는다.
+                target.findById(change.itemId).ifPresent(item -> changeStream.publish(change.type,
+                        item.getId(), item.getItemName(), item.getPrice(), item.getQuantity(), item.getVersion()));
+                continue;
+            }
+            changeStream.publish(change.type, change.itemId, change.itemName, change.price, change.quantity,
+                    change.version);
+        }
+    }
+
+    private static Change saved(Item item) {
+        return new Change(ItemChangeEvent.Type.SAVE, item.getId(),
+                item.getItemName(), item.getPrice(), item.getQuantity(), item.getVersion());
+    }
+
+    private static Change updated(Long itemId) {
+        return new Change(ItemChangeEvent.Type.UPDATE, itemId, null, null, null, null);
+    }
+
+    /**
+     * 커밋될 때까지 들고 있는 변경 값, UPDATE 는 커밋된 뒤에 다시 조회하므로 id 만 있다.
+     */
+    private static class Change {
+
+        private final ItemChangeEvent.Type type;
+        private final Long itemId;
+        private final String itemName;
+        private final Integer price;
+        private final Integer quantity;
+        private final Long version;
+
+        private Change(ItemChangeEvent.Type type, Long itemId, String itemName, Integer price, Integer quantity,
+                       Long version) {
+            this.type = type;
+            this.itemId = itemId;
+            this.itemName = itemName;
+            this.price = price;
+            this.quantity = quantity;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package hello.itemservice.repository.jdbctemplate;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAdjustDto;
+import hello.itemservice.repository.ItemAggregatesDto;
+import hello.itemservice.repository.ItemDto;
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemUpdateDto;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import javax.sql.DataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+
+/**
+ * NamedParameterJdbcTemplate, SimpleJdbcInsert 로 SQL 을 직접 실행하는 저장소
+ * 영속성 컨텍스트(1차 캐시, 변경 감지, 스냅샷)가 없으므로, 조회 결과는 행을 그대로 옮긴 객체이고
+ * 수정은 항상 UPDATE 문으로 바로 반영된다.
+ */
+@Slf4j
+@Repository
+@Transactional(propagation = Propagation.MANDATORY) // 변경은 서비스가 시작한 트랜잭션에 참여한다. (JpaItemRepository 와 같다)
+public class JdbcTemplateItemRepository implements ItemRepository {
+
+    // JpaItemRepository 와 맞춘다.
+    private static final int BATCH_SIZE = 50;
+    private static final int FETCH_SIZE = 1_000;
+
+    // item_seq 는 increment by 50 : 시퀀스 값 하나로 id 50개를 쓴다. (하이버네이트 pooled 방식과 같은 범위)
+    private static final int ID_ALLOCATION_SIZE = 50;
+    private static final String NEXT_ID_SQL = "select next value for item_seq";
+
+    private static final String ITEM_COLUMNS = "id, item_name, price, quantity, version";
+    private static final String ITEM_DTO_COLUMNS = "id, item_name, price, quantity";
+    private static final String FIND_BY_ID_SQL = "select " + ITEM_COLUMNS + " from item where id = :id";
+    private static final String FIND_DTO_BY_ID_SQL = "select " + ITEM_DTO_COLUMNS + " from item where id = :id";
+    private static final String UPDATE_SQL = "update item set item_name = :itemName, price = :price, quantity = :quantity,"
+            + " version = version + 1 where id = :id";
+    private static final String UPDATE_VERSIONED_SQL = UPDATE_SQL + " and version = :version";
+    private static final String EXISTS_SQL = "select count(*) from item where id = :id";
+    private static final String AGGREGATES_SQL = aggregatesSql();
+
+    // findAll 검색 조건 조합 (비트 플래그), JpaItemRepository 와 같고 LIMIT 만 추가로 구분한다.
+    private static final int NAME = 1;
+    private static final int PRICE = 1 << 1;
+    private static final int AFTER = 1 << 2;
+    private static final int BEFORE = 1 << 3;
+    private static final int LIMIT = 1 << 4;
+
+    private static final String[] FIND_ALL_SQL = new String[1 << 5];
+    private static final String[] FIND_ALL_DTO_SQL = new String[1 << 5];
+
+    static {
+        for (int shape = 0; shape < FIND_ALL_SQL.length; shape++) {
+            FIND_ALL_SQL[shape] = findAllSql(ITEM_COLUMNS, shape);
+            FIND_ALL_DTO_SQL[shape] = findAllSql(ITEM_DTO_COLUMNS, shape);
+        }
+    }
+
+    // ResultSet 의 한 행을 객체로 옮긴다. 상태가 없어서 모든 조회가 같은 인스턴스를 쓴다.
+    static final RowMapper<Item> ITEM_ROW_MAPPER = (rs, rowNum) -> {
+        Item item = new Item(rs.getString("item_name"),
+                rs.getObject("price", Integer.class), rs.getObject("quantity", Integer.class));
+        item.setId(rs.getLong("id"));
+        item.setVersion(rs.getObject("version", Long.class));
+        return item;
+    };
+
+    static final RowMapper<ItemDto> ITEM_DTO_ROW_MAPPER = (rs, rowNum) -> new ItemDto(rs.getLong("id"),
+            rs.getString("item_name"), rs.getObject("price", Integer.class), rs.getObject("quantity", Integer.class));
+
+    private final NamedParameterJdbcTemplate template;
+    // forEachDto 전용 : fetch size 만큼씩 읽는다.
+    private final NamedParameterJdbcTemplate streamingTemplate;
+    private final SimpleJdbcInsert itemInsert;
+
+    // 할당받은 id 범위 [nextId, maxId], this 로 보호한다.
+    private long nextId;
+    private long maxId = -1;
+
+    public JdbcTemplateItemRepository(DataSource dataSource) {
+        this.template = new NamedParameterJdbcTemplate(dataSource);
+        JdbcTemplate streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        streamingJdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.streamingTemplate = new NamedParameterJdbcTemplate(streamingJdbcTemplate);
+
+        // 컬럼을 직접 지정하고 메타데이터 조회를 생략해서, INSERT 문을 여기서 한 번만 만든다.
+        SimpleJdbcInsert itemInsert = new SimpleJdbcInsert(dataSource);
+        itemInsert.withTableName("item")
+                .usingColumns("id", "item_name", "price", "quantity", "version")
+                .withoutTableColumnMetaDataAccess();
+        itemInsert.compile();
+        this.itemInsert = itemInsert;
+    }
+
+    @Override
+    public Item save(Item item) {
+        item.setId(nextId());
+        item.setVersion(0L);
+        itemInsert.execute(insertParams(item));
+        return item;
+    }
+
+    /**
+     * BATCH_SIZE 건씩 JDBC 배치 INSERT(batchUpdate) 로 보낸다.
+     */
+    @Override
+    public List<Item> saveAll(Collection<Item> items) {
+        List<SqlParameterSource> batch = new ArrayList<>(BATCH_SIZE);
+        for (Item item : items) {
+            item.setId(nextId());
+            item.setVersion(0L);
+            batch.add(insertParams(item));
+            if (batch.size() == BATCH_SIZE) {
+                itemInsert.executeBatch(batch.toArray(new SqlParameterSource[0]));
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            itemInsert.executeBatch(batch.toArray(new SqlParameterSource[0]));
+        }
+        return new ArrayList<>(items);
+    }
+
+    /**
+     * 버전이 있으면 UPDATE 의 조건으로 확인한다. 반영된 행이 없으면 상품이 없거나 다른 요청이 먼저 수정한 것이다.
+     */
+    @Override
+    public void update(Long itemId, ItemUpdateDto updateParam) {
+        MapSqlParameterSource params = updateParams(itemId, updateParam);
+        if (updateParam.getVersion() == null) {
+            if (template.update(UPDATE_SQL, params) == 0) {
+                throw new EmptyResultDataAccessException("item " + itemId + " not found", 1);
+            }
+            return;
+        }
+        params.addValue("version", updateParam.getVersion());
+        if (template.update(UPDATE_VERSIONED_SQL, params) == 0) {
+            Integer count = template.queryForObject(EXISTS_SQL, Map.of("id", itemId), Integer.class);
+            if (count == null || count == 0) {
+                throw new EmptyResultDataAccessException("item " + itemId + " not found", 1);
+            }
+            throw new OptimisticLockingFailureException(
+                    "item " + itemId + " was modified: version " + updateParam.getVersion());
+        }
+    }
+
+    /**
+     * 버전이 있는 수정은 버전을 UPDATE 의 조건으로 확인하고, 반영된 행이 없으면 OptimisticLockingFailureException 이 발생한다.
+     * (상품이 없는 경우도 구분하지 않고 같은 예외, 트랜잭션은 롤백된다)
+     */
+    @Override
+    public int updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        List<SqlParameterSource> batch = new ArrayList<>(BATCH_SIZE);
+        List<SqlParameterSource> versionedBatch = new ArrayList<>(BATCH_SIZE);
+        List<Long> versionedIds = new ArrayList<>(BATCH_SIZE);
+        int count = 0;
+        for (Map.Entry<Long, ItemUpdateDto> entry : updateParams.entrySet()) {
+            ItemUpdateDto updateParam = entry.getValue();
+            MapSqlParameterSource params = updateParams(entry.getKey(), updateParam);
+            if (updateParam.getVersion() == null) {
+                batch.add(params);
+                if (batch.size() == BATCH_SIZE) {
+                    count += updatedRows(template.batchUpdate(UPDATE_SQL, batch.toArray(new SqlParameterSource[0])));
+                    batch.clear();
+                }
+            } else {
+                versionedBatch.add(params.addValue("version", updateParam.getVersion()));
+                versionedIds.add(entry.getKey());
+                if (versionedBatch.size() == BATCH_SIZE) {
+                    count += versionedRows(versionedBatch, versionedIds);
+                    versionedBatch.clear();
+                    versionedIds.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            count += updatedRows(template.batchUpdate(UPDATE_SQL, batch.toArray(new SqlParameterSource[0])));
+        }
+        if (!versionedBatch.isEmpty()) {
+            count += versionedRows(versionedBatch, versionedIds);
+        }
+        return count;
+    }
+
+    private int versionedRows(List<SqlParameterSource> batch, List<Long> itemIds) {
+        int[] results = template.batchUpdate(UPDATE_VERSIONED_SQL, batch.toArray(new SqlParameterSource[0]));
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == 0) {
+                throw new OptimisticLockingFailureException("item " + itemIds.get(i) + " was modified or not found");
+            }
+        }
+        return updatedRows(results);
+    }
+
+    @Override
+    public int adjustAll(ItemSearchCond cond, ItemAdjustDto adjustParam) {
+        List<String> set = new ArrayList<>();
+        if (adjustParam.getPriceRate() != null) {
+            set.add("price = price + price * :priceRate / 100");
+        }
+        if (adjustParam.getQuantityDelta() != null) {
+            set.add("quantity = quantity + :quantityDelta");
+        }
+        if (set.isEmpty()) {
+            return 0;
+        }
+        set.add("version = version + 1");
+
+        cond = new ItemSearchCond(cond.getItemName(), cond.getMaxPrice());
+        int shape = shapeOf(cond);
+        String sql = "update item set " + String.join(", ", set) + whereClause(shape);
+        MapSqlParameterSource params = searchParams(cond)
+                .addValue("priceRate", adjustParam.getPriceRate())
+                .addValue("quantityDelta", adjustParam.getQuantityDelta());
+        return template.update(sql, params);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Item> findById(Long id) {
+        List<Item> result = template.query(FIND_BY_ID_SQL, Map.of("id", id), ITEM_ROW_MAPPER);
+        return result.stream().findFirst();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Item> findAll(ItemSearchCond cond) {
+        int shape = shapeOf(cond);
+        log.debug("findAll shape={}", shape);
+        List<Item> result = template.query(FIND_ALL_SQL[shape], searchParams(cond), ITEM_ROW_MAPPER);
+        if (cond.getBeforeId() != null) {
+            Collections.reverse(result);
+        }
+        return result;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<ItemDto> findDtoById(Long id) {
+        List<ItemDto> result = template.query(FIND_DTO_BY_ID_SQL, Map.of("id", id), ITEM_DTO_ROW_MAPPER);
+        return result.stream().findFirst();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ItemDto> findAllDto(ItemSearchCond cond) {
+        int shape = shapeOf(cond);
+        log.debug("findAllDto shape={}", shape);
+        List<ItemDto> result = template.query(FIND_ALL_DTO_SQL[shape], searchParams(cond), ITEM_DTO_ROW_MAPPER);
+        if (cond.getBeforeId() != null) {
+            Collections.reverse(result);
+        }
+        return result;
+    }
+
+    /**
+     * fetch size 만큼씩 읽으면서 한 건씩 넘겨준다. JpaItemRepository 와 같이 이전 페이지 커서(beforeId)는 사용하지 않는다.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachDto(ItemSearchCond cond, Consumer<ItemDto> action) {
+        int shape = shapeOf(cond) & ~BEFORE;
+        RowCallbackHandler handler = rs -> action.accept(ITEM_DTO_ROW_MAPPER.mapRow(rs, rs.getRow()));
+        streamingTemplate.query(FIND_ALL_DTO_SQL[shape], searchParams(cond), handler);
+    }
+
+    /**
+     * 한 번의 집계 쿼리로 계산한다. (결과는 캐시하지 않는다)
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public ItemAggregatesDto aggregates() {
+        return template.getJdbcTemplate().queryForObject(AGGREGATES_SQL, (rs, rowNum) -> {
+            long[] priceHistogram = new long[ItemAggregatesDto.PRICE_BUCKET_BOUNDS.length + 1];
+            for (int bucket = 0; bucket < priceHistogram.length; bucket++) {
+                priceHistogram[bucket] = rs.getLong(3 + bucket);
+            }
+            // 상품이 없으면 sum 은 null 이고, getLong 은 0 을 돌려준다.
+            return new ItemAggregatesDto(rs.getLong(1), rs.getLong(2), priceHistogram);
+        });
+    }
+
+    /**
+     * 할당받은 범위에서 다음 id 를 돌려준다. 다 쓰면 시퀀스에서 다음 범위를 받는다.
+     */
+    private synchronized long nextId() {
+        if (nextId > maxId) {
+            Long value = template.getJdbcTemplate().queryForObject(NEXT_ID_SQL, Long.class);
+            maxId = value;
+            nextId = Math.max(1, value - ID_ALLOCATION_SIZE + 1);
+        }
+        return nextId++;
+    }
+
+    private static MapSqlParameterSource insertParams(Item item) {
+        return new MapSqlParameterSource()
+                .addValue("id", item.getId())
+                .addValue("item_name", item.getItemName())
+                .addValue("price", item.getPrice())
+                .addValue("quantity", item.getQuantity())
+                .addValue("version", item.getVersion());
+    }
+
+    private static MapSqlParameterSource updateParams(Long itemId, ItemUpdateDto updateParam) {
+        return new MapSqlParameterSource()
+                .addValue("id", itemId)
+                .addValue("itemName", updateParam.getItemName())
+                .addValue("price", updateParam.getPrice())
+                .addValue("quantity", updateParam.getQuantity());
+    }
+
+    private static MapSqlParameterSource searchParams(ItemSearchCond cond) {
+        return new MapSqlParameterSource()
+                .addValue("itemName", cond.getItemName())
+                .addValue("maxPrice", cond.getMaxPrice())
+                .addValue("afterId", cond.getAfterId())
+                .addValue("beforeId", cond.getBeforeId())
+                .addValue("size", cond.getSize());
+    }
+
+    private static int updatedRows(int[] results) {
+        int count = 0;
+        for (int result : results) {
+            // 드라이버가 영향받은 행 수를 알려주지 않으면(SUCCESS_NO_INFO) 1건으로 센다.
+            count += result == Statement.SUCCESS_NO_INFO ? 1 : result;
+        }
+        return count;
+    }
+
+    private static int shapeOf(ItemSearchCond cond) {
+        int shape = 0;
+        if (StringUtils.hasText(cond.getItemName())) {
+            shape |= NAME;
+        }
+        if (cond.getMaxPrice() != null) {
+            shape |= PRICE;
+        }
+        if (cond.getAfterId() != null) {
+            shape |= AFTER;
+        }
+        if (cond.getBeforeId() != null) {
+            shape |= BEFORE;
+        }
+        if (cond.getSize() != null) {
+            shape |= LIMIT;
+        }
+        return shape;
+    }
+
+    private static String aggregatesSql() {
+        List<String> select = new ArrayList<>();
+        select.add("count(*)");
+        select.add("sum(cast(price as bigint) * quantity)");
+        int[] bounds = ItemAggregatesDto.PRICE_BUCKET_BOUNDS;
+        for (int bucket = 0; bucket <= bounds.length; bucket++) {
+            List<String> range = new ArrayList<>();
+            if (bucket > 0) {
+                range.add("price >= " + bounds[bucket - 1]);
+            }
+            if (bucket < bounds.length) {
+                range.add("price < " + bounds[bucket]);
+            }
+            select.add("sum(case when " + String.join(" and ", range) + " then 1 else 0 end)");
+        }
+        return "select " + String.join(", ", select) + " from item";
+    }
+
+    /**
+     * 검색 조건 조합마다 SQL 을 한 번만 만든다.
+     */
+    private static String findAllSql(String columns, int shape) {
+        String sql = "select " + columns + " from item" + whereClause(shape);
+
+        // 이전 페이지는 beforeId 부터 역순으로 찾는다.
+        sql += (shape & BEFORE) != 0 ? " order by id desc" : " order by id";
+        if ((shape & LIMIT) != 0) {
+            sql += " limit :size";
+        }
+        return sql;
+    }
+
+    private static String whereClause(int shape) {
+        List<String> where = new ArrayList<>();
+        if ((shape & NAME) != 0) {
+            where.add("item_name like concat('%', :itemName, '%')");
+        }
+        if ((shape & PRICE) != 0) {
+            where.add("price <= :maxPrice");
+        }
+        if ((shape & AFTER) != 0) {
+            where.add("id > :afterId");
+        }
+        if ((shape & BEFORE) != 0) {
+            where.add("id < :beforeId");
+        }
+        return where.isEmpty() ? "" : " where " + String.join(" and ", where);
+    }
+}
@@ -1,49 +1,247 @@
 package hello.itemservice.repository.jpa;
 
 import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAdjustDto;
+import hello.itemservice.repository.ItemAggregatesDto;
+import hello.itemservice.repository.ItemDto;
 import hello.itemservice.repository.ItemRepository;
 import hello.itemservice.repository.ItemSearchCond;
 import hello.itemservice.repository.ItemUpdateDto;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.StringUtils;
 
 @Slf4j
 @Repository
-@Transactional // JPA의 모든 변경은 트랜잭션 안에서 이루어진다. 그래서 클래스 또는 메서드에 추가해줘야 한다.
-// 일반적으로 비즈니스 로직을 시작하는 서비스 계층에 트랜잭션을 걸어준다.
-// 다만, 지금 예제처럼 복잡한 비즈니스 로직이 없어서 서비스 계층 대신 Repository에 트랜잭션을 걸 수도 있다.
+@Transactional(propagation = Propagation.MANDATORY) // JPA의 모든 변경은 트랜잭션 안에서 이루어진다.
+// 일반적으로 비즈니스 로직을 시작하는 서비스 계층에 트랜잭션을 걸어준다. (ItemServiceV1)
+// 변경은 서비스가 시작한 트랜잭션에 참여만 하고, 트랜잭션 없이 호출하면 예외가 발생한다.
+// 조회는 메서드마다 readOnly 트랜잭션을 건다. (서비스 트랜잭션이 있으면 참여한다)
 public class JpaItemRepository implements ItemRepository {
 
     // JPA의 모든 동작은 엔티티 매니저를 통해 이루어진다.
     // 엔티티 매니저는 내부에 데이터소스를 가지고 있고, 데이터베이스에 접근할 수 있다.
     private final EntityManager em;
 
-    public JpaItemRepository(EntityManager em) {
+    // application.properties 의 hibernate.jdbc.batch_size 와 맞춘다.
+    private static final int BATCH_SIZE = 50;
+
+    // 스트리밍 조회 시 한 번에 가져올 행 수
+    private static final int FETCH_SIZE = 1_000;
+
+    private static final String UPDATE_SQL = "update item set item_name = ?, price = ?, quantity = ?, version = version + 1 where id = ?";
+    private static final String UPDATE_VERSIONED_SQL = UPDATE_SQL + " and version = ?";
+
+    // findAll 검색 조건 조합 (비트 플래그)
+    private static final int NAME = 1;
+    private static final int PRICE = 1 << 1;
+    private static final int AFTER = 1 << 2;
+    private static final int BEFORE = 1 << 3;
+
+    private static final String[] FIND_ALL_QUERY_NAMES = new String[1 << 4];
+    private static final String[] FIND_ALL_DTO_QUERY_NAMES = new String[1 << 4];
+    private static final String FIND_DTO_BY_ID_QUERY_NAME = "ItemDto.findById";
+
+    private static final String ITEM_SELECT = "select i from Item i";
+    private static final String ITEM_DTO_SELECT =
+            "select new hello.itemservice.repository.ItemDto(i.id, i.itemName, i.price, i.quantity) from Item i";
+
+    // 상품 수, 재고 금액, 가격 구간별 상품 수를 한 번의 집계 쿼리로 구한다.
+    private static final String AGGREGATES_JPQL = aggregatesJpql();
+
+    static {
+        for (int shape = 0; shape < FIND_ALL_QUERY_NAMES.length; shape++) {
+            FIND_ALL_QUERY_NAMES[shape] = "Item.findAll." + shape;
+            FIND_ALL_DTO_QUERY_NAMES[shape] = "ItemDto.findAll." + shape;
+        }
+    }
+
+    // 집계 결과 캐시 : 쓰기마다 epoch 를 올려서 무효화한다. (CachingItemRepository 의 검색 캐시와 같은 방식)
+    // 이 저장소를 거치지 않은 쓰기(다른 노드, SQL)는 알 수 없으므로 aggregatesTtl 이 지나면 다시 집계한다.
+    private final AtomicLong aggregatesEpoch = new AtomicLong();
+    private final long aggregatesTtlNanos;
+    private volatile CachedAggregates cachedAggregates;
+
+    public JpaItemRepository(EntityManager em, Duration aggregatesTtl) {
         this.em = em;
+        this.aggregatesTtlNanos = aggregatesTtl.toNanos();
+        registerFindAllQueries(em.getEntityManagerFactory());
     }
 
     @Override
     public Item save(Item item) {
         em.persist(item);
+        invalidateAggregates();
         return item;
     }
 
+    /**
+     * 대량 저장 : hibernate.jdbc.batch_size 단위로 flush, clear 해서 INSERT 를 배치로 보내고, 영속성 컨텍스트 메모리를 일정하게 유지한다.
+     * clear 하므로 저장이 끝난 상품은 준영속 상태가 된다.
+     */
+    @Override
+    public List<Item> saveAll(Collection<Item> items) {
+        int count = 0;
+        for (Item item : items) {
+            em.persist(item);
+            if (++count % BATCH_SIZE == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+        invalidateAggregates();
+        return new ArrayList<>(items);
+    }
+
+    /**
+     * 수정 폼의 버전과 현재 버전이 다르면 OptimisticLockingFailureException 이 발생한다.
+     * 조회 후 커밋 전에 다른 트랜잭션이 먼저 수정한 경우에는, 커밋 시점에 같은 예외(ObjectOptimisticLockingFailureException)가 발생한다.
+     */
     @Override
     public void update(Long itemId, ItemUpdateDto updateParam) {
         Item finditem = em.find(Item.class, itemId);
+        if (updateParam.getVersion() != null && !updateParam.getVersion().equals(finditem.getVersion())) {
+            throw new OptimisticLockingFailureException(
+                    "item " + itemId + " was modified: version " + updateParam.getVersion() + " -> " + finditem.getVersion());
+        }
         finditem.setItemName(updateParam.getItemName());
         finditem.setPrice(updateParam.getPrice());
         finditem.setQuantity(updateParam.getQuantity());
+        invalidateAggregates();
+    }
+
+    /**
+     * 상품을 조회하지 않고, UPDATE 문을 JDBC 배치로 묶어서 보낸다.
+     * 영속성 컨텍스트를 거치지 않으므로, 먼저 flush 하고 끝나면 clear 해서 오래된 엔티티가 남지 않게 한다.
+     * 버전이 있는 수정은 버전을 UPDATE 의 조건으로 확인하고, 반영된 행이 없으면 OptimisticLockingFailureException 이 발생한다.
+     * (상품이 없는 경우도 구분하지 않고 같은 예외, 트랜잭션은 롤백된다)
+     */
+    @Override
+    public int updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        em.flush();
+        int[] count = {0};
+        em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement pstmt = connection.prepareStatement(UPDATE_SQL);
+                 PreparedStatement versioned = connection.prepareStatement(UPDATE_VERSIONED_SQL)) {
+                int batched = 0;
+                List<Long> versionedIds = new ArrayList<>(BATCH_SIZE);
+                for (Map.Entry<Long, ItemUpdateDto> entry : updateParams.entrySet()) {
+                    ItemUpdateDto updateParam = entry.getValue();
+                    PreparedStatement statement = updateParam.getVersion() == null ? pstmt : versioned;
+                    statement.setString(1, updateParam.getItemName());
+                    statement.setObject(2, updateParam.getPrice(), Types.INTEGER);
+                    statement.setObject(3, updateParam.getQuantity(), Types.INTEGER);
+                    statement.setLong(4, entry.getKey());
+                    if (updateParam.getVersion() == null) {
+                        pstmt.addBatch();
+                        if (++batched % BATCH_SIZE == 0) {
+                            count[0] += updatedRows(pstmt.executeBatch());
+                        }
+                    } else {
+                        versioned.setLong(5, updateParam.getVersion());
+                        versioned.addBatch();
+                        versionedIds.add(entry.getKey());
+                        if (versionedIds.size() == BATCH_SIZE) {
+                            count[0] += versionedRows(versioned.executeBatch(), versionedIds);
+                            versionedIds.clear();
+                        }
+                    }
+                }
+                count[0] += updatedRows(pstmt.executeBatch());
+                count[0] += versionedRows(versioned.executeBatch(), versionedIds);
+            }
+        });
+        em.clear();
+        invalidateAggregates();
+        return count[0];
+    }
+
+    /**
+     * 검색 조건에 맞는 상품의 가격, 수량을 한 번의 벌크 UPDATE 로 조정한다. (예 : 야간 가격 일괄 변경)
+     */
+    @Override
+    public int adjustAll(ItemSearchCond cond, ItemAdjustDto adjustParam) {
+        List<String> set = new ArrayList<>();
+        if (adjustParam.getPriceRate() != null) {
+            set.add("i.price = i.price + i.price * :priceRate / 100");
+        }
+        if (adjustParam.getQuantityDelta() != null) {
+            set.add("i.quantity = i.quantity + :quantityDelta");
+        }
+        if (set.isEmpty()) {
+            return 0;
+        }
+
+        cond = new ItemSearchCond(cond.getItemName(), cond.getMaxPrice());
+        int shape = shapeOf(cond);
+        // versioned : 벌크 UPDATE 에서도 버전을 올려서, 이전 버전으로 수정하려는 요청이 충돌로 감지되게 한다.
+        String jpql = "update versioned Item i set " + String.join(", ", set) + whereClause(shape);
+        Query query = em.createQuery(jpql);
+        bindSearchCond(query, shape, cond);
+        if (adjustParam.getPriceRate() != null) {
+            query.setParameter("priceRate", adjustParam.getPriceRate());
+        }
+        if (adjustParam.getQuantityDelta() != null) {
+            query.setParameter("quantityDelta", adjustParam.getQuantityDelta());
+        }
+
+        // 벌크 연산은 영속성 컨텍스트를 무시하고 DB 에 직접 실행되므로, 실행 후 영속성 컨텍스트를 초기화한다.
+        int count = query.executeUpdate();
+        em.clear();
+        invalidateAggregates();
+        return count;
+    }
+
+    /**
+     * 버전 조건이 있는 UPDATE 배치 결과, 반영되지 않은 행이 있으면 다른 요청이 먼저 수정(또는 삭제)한 것이다.
+     */
+    private static int versionedRows(int[] results, List<Long> itemIds) {
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == 0) {
+                throw new OptimisticLockingFailureException("item " + itemIds.get(i) + " was modified or not found");
+            }
+        }
+        return updatedRows(results);
+    }
+
+    private static int updatedRows(int[] results) {
+        int count = 0;
+        for (int result : results) {
+            // 드라이버가 영향받은 행 수를 알려주지 않으면(SUCCESS_NO_INFO) 1건으로 센다.
+            count += result == Statement.SUCCESS_NO_INFO ? 1 : result;
+        }
+        return count;
     }
 
+    // readOnly 트랜잭션 : 스프링이 하이버네이트 세션을 FlushMode.MANUAL, 읽기 전용으로 설정해서 flush 와 변경 감지용 스냅샷을 생략한다.
     @Override
+    @Transactional(readOnly = true)
     public Optional<Item> findById(Long id) {
         Item item = em.find(Item.class, id);
 
@@ -61,41 +259,235 @@ public class JpaItemRepository implements ItemRepository {
 //    }
 
     @Override
+    @Transactional(readOnly = true)
     public List<Item> findAll(ItemSearchCond cond) {
-        String jpql = "select i from Item i";
+        int shape = shapeOf(cond);
+
+        // 요청마다 JPQL 을 만들지 않고, 미리 등록해 둔 쿼리를 이름으로 꺼내 쓴다.
+        log.debug("findAll query={}", FIND_ALL_QUERY_NAMES[shape]);
+        TypedQuery<Item> query = em.createNamedQuery(FIND_ALL_QUERY_NAMES[shape], Item.class);
+        bindSearchCond(query, shape, cond);
+        if (cond.getSize() != null) {
+            query.setMaxResults(cond.getSize());
+        }
+
+        List<Item> result = query.getResultList();
+        if (cond.getBeforeId() != null) {
+            Collections.reverse(result);
+        }
+        return result;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<ItemDto> findDtoById(Long id) {
+        List<ItemDto> result = em.createNamedQuery(FIND_DTO_BY_ID_QUERY_NAME, ItemDto.class)
+                .setParameter("id", id)
+                .getResultList();
+        return result.stream().findFirst();
+    }
 
-        Integer maxPrice = cond.getMaxPrice();
-        String itemName = cond.getItemName();
+    @Override
+    @Transactional(readOnly = true)
+    public List<ItemDto> findAllDto(ItemSearchCond cond) {
+        int shape = shapeOf(cond);
 
-        if (StringUtils.hasText(itemName) || maxPrice != null) {
-            jpql += " where";
+        log.debug("findAllDto query={}", FIND_ALL_DTO_QUERY_NAMES[shape]);
+        TypedQuery<ItemDto> query = em.createNamedQuery(FIND_ALL_DTO_QUERY_NAMES[shape], ItemDto.class);
+        bindSearchCond(query, shape, cond);
+        if (cond.getSize() != null) {
+            query.setMaxResults(cond.getSize());
         }
 
-        boolean andFlag = false;
-        List<Object> param = new ArrayList<>();
-        if (StringUtils.hasText(itemName)) {
-            jpql += " i.itemName like concat('%',:itemName,'%')";
-            param.add(itemName);
-            andFlag = true;
+        List<ItemDto> result = query.getResultList();
+        if (cond.getBeforeId() != null) {
+            Collections.reverse(result);
         }
+        return result;
+    }
 
-        if (maxPrice != null) {
-            if (andFlag) {
-                jpql += " and";
+    /**
+     * 결과를 목록으로 모으지 않고, 커서(ScrollableResults)로 fetch size 만큼씩 읽으면서 한 건씩 넘겨준다.
+     * DTO 로 조회하므로 영속성 컨텍스트에 엔티티가 쌓이지 않아, 전체 건수와 관계없이 메모리 사용량이 일정하다.
+     * 이전 페이지 커서(beforeId)는 역순 정렬이 필요해서 사용하지 않는다.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachDto(ItemSearchCond cond, Consumer<ItemDto> action) {
+        int shape = shapeOf(cond) & ~BEFORE;
+
+        TypedQuery<ItemDto> query = em.createNamedQuery(FIND_ALL_DTO_QUERY_NAMES[shape], ItemDto.class)
+                .setHint(QueryHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                .setHint(QueryHints.HINT_READONLY, true);
+        bindSearchCond(query, shape, cond);
+        if (cond.getSize() != null) {
+            query.setMaxResults(cond.getSize());
+        }
+
+        try (Stream<ItemDto> stream = query.getResultStream()) {
+            stream.forEach(action);
+        }
+    }
+
+    /**
+     * 마지막 쓰기 이후 한 번만 집계 쿼리를 실행하고, 다음 쓰기 전까지 aggregatesTtl 동안은 캐시된 결과를 돌려준다.
+     * 쓰기 트랜잭션 안에서 호출되면 커밋 전 값이 보이므로 결과를 캐시하지 않는다.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public ItemAggregatesDto aggregates() {
+        long epoch = aggregatesEpoch.get();
+        long now = System.nanoTime();
+        CachedAggregates cached = cachedAggregates;
+        if (cached == null || cached.epoch != epoch || now - cached.expiresAt >= 0) {
+            Object[] row = em.createQuery(AGGREGATES_JPQL, Object[].class).getSingleResult();
+            long[] priceHistogram = new long[ItemAggregatesDto.PRICE_BUCKET_BOUNDS.length + 1];
+            for (int bucket = 0; bucket < priceHistogram.length; bucket++) {
+                priceHistogram[bucket] = longValue(row[2 + bucket]);
+            }
+            cached = new CachedAggregates(epoch, now + aggregatesTtlNanos,
+                    longValue(row[0]), longValue(row[1]), priceHistogram);
+            if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+                cachedAggregates = cached;
             }
-            jpql += " i.price <= :maxPrice";
-            param.add(maxPrice);
         }
+        return new ItemAggregatesDto(cached.itemCount, cached.inventoryValue, cached.priceHistogram.clone());
+    }
+
+    /**
+     * 지금 바로 무효화하고, 커밋/롤백 후에 한 번 더 무효화한다.
+     * 커밋 전에 다른 스레드가 이전 값으로 다시 캐시한 결과가 남지 않게 한다.
+     */
+    private void invalidateAggregates() {
+        aggregatesEpoch.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    aggregatesEpoch.incrementAndGet();
+                }
+            });
+        }
+    }
+
+    private static long longValue(Object value) {
+        // 상품이 없으면 sum 은 null 이다.
+        return value != null ? ((Number) value).longValue() : 0;
+    }
 
-        log.info("jpql={}", jpql);
+    private static String aggregatesJpql() {
+        List<String> select = new ArrayList<>();
+        select.add("count(i)");
+        // int * int 가 넘치지 않도록 long 으로 곱한다. 가격이나 수량이 null 이면 합계에서 빠진다.
+        select.add("sum(cast(i.price as long) * i.quantity)");
+        int[] bounds = ItemAggregatesDto.PRICE_BUCKET_BOUNDS;
+        for (int bucket = 0; bucket <= bounds.length; bucket++) {
+            List<String> range = new ArrayList<>();
+            if (bucket > 0) {
+                range.add("i.price >= " + bounds[bucket - 1]);
+            }
+            if (bucket < bounds.length) {
+                range.add("i.price < " + bounds[bucket]);
+            }
+            select.add("sum(case when " + String.join(" and ", range) + " then 1 else 0 end)");
+        }
+        return "select " + String.join(", ", select) + " from Item i";
+    }
 
-        TypedQuery<Item> query = em.createQuery(jpql, Item.class);
-        if (StringUtils.hasText(itemName)) {
-            query.setParameter("itemName", itemName);
+    private static int shapeOf(ItemSearchCond cond) {
+        int shape = 0;
+        if (StringUtils.hasText(cond.getItemName())) {
+            shape |= NAME;
+        }
+        if (cond.getMaxPrice() != null) {
+            shape |= PRICE;
+        }
+        if (cond.getAfterId() != null) {
+            shape |= AFTER;
         }
-        if (maxPrice != null) {
-            query.setParameter("maxPrice", maxPrice);
+        if (cond.getBeforeId() != null) {
+            shape |= BEFORE;
+        }
+        return shape;
+    }
+
+    private static void bindSearchCond(Query query, int shape, ItemSearchCond cond) {
+        if ((shape & NAME) != 0) {
+            query.setParameter("itemName", cond.getItemName());
+        }
+        if ((shape & PRICE) != 0) {
+            query.setParameter("maxPrice", cond.getMaxPrice());
+        }
+        if ((shape & AFTER) != 0) {
+            query.setParameter("afterId", cond.getAfterId());
+        }
+        if ((shape & BEFORE) != 0) {
+            query.setParameter("beforeId", cond.getBeforeId());
+        }
+    }
+
+    /**
+     * findAll 의 검색 조건 조합(상품명, 가격, 다음/이전 페이지 커서)마다 JPQL 을 한 번만 만들어 named query 로 등록한다.
+     * 등록할 때 쿼리를 파싱하므로, JPQL 오류는 애플리케이션 시작 시점에 드러난다.
+     */
+    private static void registerFindAllQueries(EntityManagerFactory emf) {
+        EntityManager registerEm = emf.createEntityManager();
+        try {
+            for (int shape = 0; shape < FIND_ALL_QUERY_NAMES.length; shape++) {
+                emf.addNamedQuery(FIND_ALL_QUERY_NAMES[shape],
+                        registerEm.createQuery(findAllJpql(ITEM_SELECT, shape), Item.class));
+                emf.addNamedQuery(FIND_ALL_DTO_QUERY_NAMES[shape],
+                        registerEm.createQuery(findAllJpql(ITEM_DTO_SELECT, shape), ItemDto.class));
+            }
+            emf.addNamedQuery(FIND_DTO_BY_ID_QUERY_NAME,
+                    registerEm.createQuery(ITEM_DTO_SELECT + " where i.id = :id", ItemDto.class));
+        } finally {
+            registerEm.close();
+        }
+    }
+
+    private static String findAllJpql(String select, int shape) {
+        String jpql = select + whereClause(shape);
+
+        // 이전 페이지는 beforeId 부터 역순으로 찾는다.
+        jpql += (shape & BEFORE) != 0 ? " order by i.id desc" : " order by i.id";
+        return jpql;
+    }
+
+    private static String whereClause(int shape) {
+        List<String> where = new ArrayList<>();
+        if ((shape & NAME) != 0) {
+            where.add("i.itemName like concat('%',:itemName,'%')");
+        }
+        if ((shape & PRICE) != 0) {
+            where.add("i.price <= :maxPrice");
+        }
+
+        // 키셋 페이징 : OFFSET 대신 PK 조건으로 시작 위치를 찾으므로, 뒤 페이지로 가도 앞의 행을 읽고 버리지 않는다.
+        if ((shape & AFTER) != 0) {
+            where.add("i.id > :afterId");
+        }
+        if ((shape & BEFORE) != 0) {
+            where.add("i.id < :beforeId");
+        }
+
+        return where.isEmpty() ? "" : " where " + String.join(" and ", where);
+    }
+
+    private static class CachedAggregates {
+
+        private final long epoch;
+        private final long expiresAt; // System.nanoTime() 기준
+        private final long itemCount;
+        private final long inventoryValue;
+        private final long[] priceHistogram;
+
+        CachedAggregates(long epoch, long expiresAt, long itemCount, long inventoryValue, long[] priceHistogram) {
+            this.epoch = epoch;
+            this.expiresAt = expiresAt;
+            this.itemCount = itemCount;
+            this.inventoryValue = inventoryValue;
+            this.priceHistogram = priceHistogram;
         }
-        return query.getResultList();
     }
 }
@@ -0,0 +1,26 @@
+package hello.itemservice.repository.jpa;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * 하이버네이트가 실행하는 SQL 문 수를 스레드(요청)별로 센다.
+ * hibernate.session_factory.statement_inspector 로 등록한다.
+ */
+public class StatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<int[]> count = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Override
+    public String inspect(String sql) {
+        count.get()[0]++;
+        return sql;
+    }
+
+    public static void reset() {
+        count.get()[0] = 0;
+    }
+
+    public static int get() {
+        return count.get()[0];
+    }
+}
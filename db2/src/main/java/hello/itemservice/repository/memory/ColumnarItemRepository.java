@@ -0,0 +1,431 @@
+package hello.itemservice.repository.memory;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAdjustDto;
+import hello.itemservice.repository.ItemDto;
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemUpdateDto;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * 상품을 객체 대신 primitive 배열(열)로 저장하는 메모리 저장소
+ *
+ * - id 는 1 부터 순서대로 발급하므로 따로 저장하지 않고, 배열의 위치(row = id - 1)로 사용한다.
+ * - 가격, 수량, 버전은 int 배열, null 여부는 행마다 1 byte 플래그로 저장한다.
+ * - 상품명은 UTF-8 바이트를 하나의 byte 배열에 이어 붙이고, 행마다 시작 위치와 길이만 둔다.
+ *   수정하면 새 바이트를 뒤에 붙이고, 버려진 바이트가 절반을 넘으면 다시 모아서 압축한다.
+ * - Item, ItemDto 는 조회할 때만 만든다. 돌려준 객체를 고쳐도 저장소에는 영향이 없다.
+ * - 검색은 인덱스 없이 열을 순서대로 훑는다. maxPrice 는 가격 배열을, 상품명은 바이트를 그대로 비교한다.
+ *
+ * 읽기는 읽기 락, 쓰기는 쓰기 락으로 보호한다.
+ */
+public class ColumnarItemRepository implements ItemRepository {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MIN_COMPACT_BYTES = 1 << 20;
+    private static final int EXPORT_CHUNK = 1_000; // forEachDto 에서 락을 잡고 한 번에 읽는 건수
+
+    private static final byte NULL_NAME = 1;
+    private static final byte NULL_PRICE = 2;
+    private static final byte NULL_QUANTITY = 4;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // lock 으로 보호한다.
+    private int size;
+    private int[] prices = new int[INITIAL_CAPACITY];
+    private int[] quantities = new int[INITIAL_CAPACITY];
+    private int[] versions = new int[INITIAL_CAPACITY];
+    private byte[] nulls = new byte[INITIAL_CAPACITY];
+    private int[] nameOffsets = new int[INITIAL_CAPACITY];
+    private short[] nameLengths = new short[INITIAL_CAPACITY];
+    private byte[] names = new byte[INITIAL_CAPACITY * 8];
+    private int namesSize;
+    private int garbageNameBytes;
+
+    @Override
+    public Item save(Item item) {
+        lock.writeLock().lock();
+        try {
+            insert(item);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return item;
+    }
+
+    @Override
+    public List<Item> saveAll(Collection<Item> items) {
+        lock.writeLock().lock();
+        try {
+            ensureCapacity(size + items.size());
+            for (Item item : items) {
+                insert(item);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return new ArrayList<>(items);
+    }
+
+    @Override
+    public void update(Long itemId, ItemUpdateDto updateParam) {
+        lock.writeLock().lock();
+        try {
+            int row = row(itemId);
+            if (row < 0) {
+                throw new IllegalArgumentException("item not found: " + itemId);
+            }
+            if (updateParam.getVersion() != null && updateParam.getVersion() != versions[row]) {
+                throw new OptimisticLockingFailureException(
+                        "item " + itemId + " was modified: version " + updateParam.getVersion() + " -> " + versions[row]);
+            }
+            set(row, updateParam.getItemName(), updateParam.getPrice(), updateParam.getQuantity());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 버전이 있는 수정 중 하나라도 버전이 다르거나 상품이 없으면, 아무것도 바꾸지 않고 OptimisticLockingFailureException 이 발생한다.
+     */
+    @Override
+    public int updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        int count = 0;
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<Long, ItemUpdateDto> entry : updateParams.entrySet()) {
+                Long version = entry.getValue().getVersion();
+                int row = row(entry.getKey());
+                if (version != null && (row < 0 || versions[row] != version)) {
+                    throw new OptimisticLockingFailureException("item " + entry.getKey() + " was modified or not found");
+                }
+            }
+            for (Map.Entry<Long, ItemUpdateDto> entry : updateParams.entrySet()) {
+                int row = row(entry.getKey());
+                if (row < 0) {
+                    continue;
+                }
+                ItemUpdateDto updateParam = entry.getValue();
+                set(row, updateParam.getItemName(), updateParam.getPrice(), updateParam.getQuantity());
+                count++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return count;
+    }
+
+    @Override
+    public int adjustAll(ItemSearchCond cond, ItemAdjustDto adjustParam) {
+        Integer priceRate = adjustParam.getPriceRate();
+        Integer quantityDelta = adjustParam.getQuantityDelta();
+        lock.writeLock().lock();
+        try {
+            ItemSearchCond filter = new ItemSearchCond(cond.getItemName(), cond.getMaxPrice());
+            int[] rows = search(filter, startRow(filter), limit(filter));
+            for (int row : rows) {
+                if (priceRate != null && (nulls[row] & NULL_PRICE) == 0) {
+                    prices[row] += prices[row] * priceRate / 100;
+                }
+                if (quantityDelta != null && (nulls[row] & NULL_QUANTITY) == 0) {
+                    quantities[row] += quantityDelta;
+                }
+                versions[row]++;
+            }
+            return rows.length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Item> findById(Long id) {
+        lock.readLock().lock();
+        try {
+            int row = row(id);
+            return row < 0 ? Optional.empty() : Optional.of(toItem(row));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Item> findAll(ItemSearchCond cond) {
+        List<Item> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int row : search(cond, startRow(cond), limit(cond))) {
+                result.add(toItem(row));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        // 이전 페이지는 beforeId 부터 역순으로 찾았으므로 다시 id 순으로 돌려놓는다.
+        if (cond.getBeforeId() != null) {
+            Collections.reverse(result);
+        }
+        return result;
+    }
+
+    @Override
+    public Optional<ItemDto> findDtoById(Long id) {
+        lock.readLock().lock();
+        try {
+            int row = row(id);
+            return row < 0 ? Optional.empty() : Optional.of(toDto(row));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ItemDto> findAllDto(ItemSearchCond cond) {
+        List<ItemDto> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int row : search(cond, startRow(cond), limit(cond))) {
+                result.add(toDto(row));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (cond.getBeforeId() != null) {
+            Collections.reverse(result);
+        }
+        return result;
+    }
+
+    /**
+     * EXPORT_CHUNK 건씩 락을 잡고 읽은 뒤, 락을 놓고 넘겨준다. 느린 소비자가 쓰기를 막지 않는다.
+     * beforeId 는 무시하고 id 순으로 넘겨준다.
+     */
+    @Override
+    public void forEachDto(ItemSearchCond cond, Consumer<ItemDto> action) {
+        long remaining = limit(cond);
+        int from = cond.getAfterId() != null ? (int) Math.min(cond.getAfterId(), Integer.MAX_VALUE) : 0;
+        while (remaining > 0) {
+            List<ItemDto> chunk = new ArrayList<>();
+            lock.readLock().lock();
+            try {
+                int[] rows = search(cond, from, (int) Math.min(remaining, EXPORT_CHUNK), false);
+                for (int row : rows) {
+                    chunk.add(toDto(row));
+                }
+                if (rows.length > 0) {
+                    from = rows[rows.length - 1] + 1;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            chunk.forEach(action);
+            if (chunk.size() < Math.min(remaining, EXPORT_CHUNK)) {
+                return;
+            }
+            remaining -= chunk.size();
+        }
+    }
+
+    /**
+     * 저장소가 사용하는 배열 크기의 합 (bytes), 배열 헤더는 제외한다.
+     */
+    public long memoryBytes() {
+        lock.readLock().lock();
+        try {
+            return 4L * prices.length + 4L * quantities.length + 4L * versions.length + nulls.length
+                    + 4L * nameOffsets.length + 2L * nameLengths.length + names.length;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clearStore() {
+        lock.writeLock().lock();
+        try {
+            size = 0;
+            namesSize = 0;
+            garbageNameBytes = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 열을 모두 채운 뒤에 size 를 늘린다. set 에서 예외가 나면 행이 보이지 않은 채로 남는다.
+     */
+    private void insert(Item item) {
+        ensureCapacity(size + 1);
+        int row = size;
+        nulls[row] = 0;
+        versions[row] = 0;
+        nameOffsets[row] = 0;
+        nameLengths[row] = 0;
+        set(row, item.getItemName(), item.getPrice(), item.getQuantity());
+        versions[row] = 0;
+        size = row + 1;
+        item.setId(row + 1L);
+        item.setVersion(0L);
+    }
+
+    private void set(int row, String itemName, Integer price, Integer quantity) {
+        byte flags = 0;
+        if (itemName == null) {
+            flags |= NULL_NAME;
+        }
+        if (price == null) {
+            flags |= NULL_PRICE;
+        }
+        if (quantity == null) {
+            flags |= NULL_QUANTITY;
+        }
+        byte[] name = itemName != null ? itemName.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        if (name.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("item name too long: " + name.length + " bytes");
+        }
+        // 검증을 통과한 뒤에만 열을 고친다.
+        garbageNameBytes += nameLengths[row];
+        if (namesSize + name.length > names.length) {
+            compactNames(name.length);
+        }
+        System.arraycopy(name, 0, names, namesSize, name.length);
+        nameOffsets[row] = namesSize;
+        nameLengths[row] = (short) name.length;
+        namesSize += name.length;
+
+        nulls[row] = flags;
+        prices[row] = price != null ? price : 0;
+        quantities[row] = quantity != null ? quantity : 0;
+        versions[row]++;
+    }
+
+    /**
+     * 버려진 상품명 바이트가 절반을 넘으면 살아있는 것만 모으고, 아니면 배열을 늘린다.
+     */
+    private void compactNames(int needed) {
+        if (garbageNameBytes > MIN_COMPACT_BYTES && garbageNameBytes * 2 > namesSize) {
+            byte[] compacted = new byte[Math.max(names.length, (namesSize - garbageNameBytes + needed) * 2)];
+            int offset = 0;
+            for (int row = 0; row < size; row++) {
+                System.arraycopy(names, nameOffsets[row], compacted, offset, nameLengths[row]);
+                nameOffsets[row] = offset;
+                offset += nameLengths[row];
+            }
+            names = compacted;
+            namesSize = offset;
+            garbageNameBytes = 0;
+            return;
+        }
+        names = Arrays.copyOf(names, Math.max(names.length * 2, namesSize + needed));
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= prices.length) {
+            return;
+        }
+        int newCapacity = Math.max(prices.length * 2, capacity);
+        prices = Arrays.copyOf(prices, newCapacity);
+        quantities = Arrays.copyOf(quantities, newCapacity);
+        versions = Arrays.copyOf(versions, newCapacity);
+        nulls = Arrays.copyOf(nulls, newCapacity);
+        nameOffsets = Arrays.copyOf(nameOffsets, newCapacity);
+        nameLengths = Arrays.copyOf(nameLengths, newCapacity);
+    }
+
+    private int row(Long id) {
+        if (id == null || id < 1 || id > size) {
+            return -1;
+        }
+        return (int) (id - 1);
+    }
+
+    private int startRow(ItemSearchCond cond) {
+        if (cond.getBeforeId() != null) {
+            return (int) Math.min(cond.getBeforeId() - 2, size - 1L);
+        }
+        if (cond.getAfterId() != null) {
+            return (int) Math.min(cond.getAfterId(), Integer.MAX_VALUE);
+        }
+        return 0;
+    }
+
+    private static int limit(ItemSearchCond cond) {
+        return cond.getSize() != null ? cond.getSize() : Integer.MAX_VALUE;
+    }
+
+    private int[] search(ItemSearchCond cond, int from, int limit) {
+        return search(cond, from, limit, cond.getBeforeId() != null);
+    }
+
+    /**
+     * from 행부터 (descending 이면 거꾸로) 조건에 맞는 행을 limit 개까지 찾는다.
+     */
+    private int[] search(ItemSearchCond cond, int from, int limit, boolean descending) {
+        byte[] name = ObjectUtils.isEmpty(cond.getItemName()) ? null : cond.getItemName().getBytes(StandardCharsets.UTF_8);
+        Integer maxPrice = cond.getMaxPrice();
+        int[] rows = new int[Math.min(limit, Math.max(0, size))];
+        int count = 0;
+        int step = descending ? -1 : 1;
+        for (int row = from; row >= 0 && row < size && count < rows.length; row += step) {
+            if (maxPrice != null && ((nulls[row] & NULL_PRICE) != 0 || prices[row] > maxPrice)) {
+                continue;
+            }
+            if (name != null && ((nulls[row] & NULL_NAME) != 0 || !nameContains(row, name))) {
+                continue;
+            }
+            rows[count++] = row;
+        }
+        return count == rows.length ? rows : Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * UTF-8 바이트열의 포함 여부는 문자열의 포함 여부와 같으므로, 문자열을 만들지 않고 바이트로 비교한다.
+     */
+    private boolean nameContains(int row, byte[] pattern) {
+        int offset = nameOffsets[row];
+        int last = offset + nameLengths[row] - pattern.length;
+        outer:
+        for (int i = offset; i <= last; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (names[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private String name(int row) {
+        if ((nulls[row] & NULL_NAME) != 0) {
+            return null;
+        }
+        return new String(names, nameOffsets[row], nameLengths[row], StandardCharsets.UTF_8);
+    }
+
+    private Item toItem(int row) {
+        Item item = new Item(name(row),
+                (nulls[row] & NULL_PRICE) != 0 ? null : prices[row],
+                (nulls[row] & NULL_QUANTITY) != 0 ? null : quantities[row]);
+        item.setId(row + 1L);
+        item.setVersion((long) versions[row]);
+        return item;
+    }
+
+    private ItemDto toDto(int row) {
+        return new ItemDto(row + 1L, name(row),
+                (nulls[row] & NULL_PRICE) != 0 ? null : prices[row],
+                (nulls[row] & NULL_QUANTITY) != 0 ? null : quantities[row]);
+    }
+}
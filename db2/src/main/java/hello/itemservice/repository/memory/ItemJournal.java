@@ -0,0 +1,437 @@
+package hello.itemservice.repository.memory;
+
+import hello.itemservice.domain.Item;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * MemoryItemRepository 의 변경을 파일에 남겨서 재시작 후에도 복구할 수 있게 한다.
+ *
+ * - 변경된 상품의 상태(id, version, 상품명, 가격, 수량)를 로그 파일(journal-N.log)에 덧붙인다.
+ * - fsync 는 모아서 한다. (group commit) 먼저 기다리던 스레드가 fsync 하면, 그 사이 덧붙인 다른 스레드들도 함께 끝난다.
+ * - 주기적으로 새 로그 파일로 바꾸고 전체 상품을 스냅샷(snapshot-N.snap)으로 쓴 뒤, 이전 파일들을 지운다.
+ * - 복구할 때는 가장 최근 스냅샷과 그 이후 로그를 mmap 으로 읽어서, 상품마다 버전이 가장 높은 상태를 남긴다.
+ *   스냅샷은 쓰는 중에도 변경을 받으므로 로그와 겹칠 수 있는데, 버전으로 비교하므로 순서와 상관없이 같은 결과가 된다.
+ *
+ * 레코드 : [길이 int][CRC32 int][id long][version long][null 플래그 byte][가격 int][수량 int][상품명 길이 short][상품명 UTF-8]
+ * 마지막 레코드가 잘려 있거나 CRC 가 맞지 않으면 (fsync 전에 종료된 경우) 그 파일은 거기까지만 읽는다.
+ * 상품명은 UTF-8 로 MAX_NAME_BYTES 까지만 남길 수 있다. 쓰는 쪽에서 checkName 으로 미리 확인한다.
+ *
+ * 덧붙이기나 fsync 가 한 번이라도 실패하면 로그 중간에 잘린 레코드가 남을 수 있다.
+ * 그 뒤에 덧붙인 레코드는 복구할 때 읽히지 않으므로, 이후의 append 는 모두 실패시킨다.
+ */
+@Slf4j
+public class ItemJournal implements AutoCloseable {
+
+    public static final int MAX_NAME_BYTES = Short.MAX_VALUE;
+
+    private static final Pattern FILE_NAME = Pattern.compile("(journal|snapshot)-(\\d+)\\.(log|snap)");
+    private static final int HEADER_SIZE = 8; // 길이, CRC
+    private static final int MAX_RECORD_SIZE = HEADER_SIZE + 8 + 8 + 1 + 4 + 4 + 2 + MAX_NAME_BYTES;
+    private static final long MAP_WINDOW = 256L << 20; // 한 번에 mmap 하는 크기
+
+    private static final int NULL_NAME = 1;
+    private static final int NULL_PRICE = 2;
+    private static final int NULL_QUANTITY = 4;
+
+    private final Path directory;
+    private final Duration snapshotInterval;
+
+    // 덧붙이기는 appendLock 으로 한 번에 하나씩 한다.
+    private final Object appendLock = new Object();
+    private final ByteBuffer appendBuffer = ByteBuffer.allocateDirect(MAX_RECORD_SIZE);
+    private FileChannel logChannel;
+    private long generation;
+    private long appended; // 덧붙인 레코드 수 (위치)
+    private volatile IOException failure; // 처음 실패한 덧붙이기나 fsync
+
+    // group commit : fsync 는 한 번에 한 스레드만 하고, 나머지는 끝나기를 기다린다.
+    private final Object syncLock = new Object();
+    private long durable; // fsync 된 위치
+    private boolean syncing;
+
+    private ScheduledExecutorService scheduler;
+    private Consumer<Consumer<Item>> snapshotSource;
+
+    public ItemJournal(Path directory, Duration snapshotInterval) {
+        this.directory = directory;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * 스냅샷과 로그를 읽어서 상품마다 restore 를 호출한다. 같은 상품이 여러 번 나올 수 있다.
+     */
+    public void recover(Consumer<Item> restore) {
+        try {
+            Files.createDirectories(directory);
+            List<Path> snapshots = files("snapshot");
+            long snapshotGeneration = 0;
+            if (!snapshots.isEmpty()) {
+                Path snapshot = snapshots.get(snapshots.size() - 1);
+                snapshotGeneration = generationOf(snapshot);
+                long count = read(snapshot, restore);
+                log.info("item snapshot {} recovered, {} items", snapshot.getFileName(), count);
+            }
+            long lastGeneration = snapshotGeneration;
+            for (Path journal : files("journal")) {
+                long journalGeneration = generationOf(journal);
+                lastGeneration = Math.max(lastGeneration, journalGeneration);
+                if (journalGeneration >= snapshotGeneration) {
+                    long count = read(journal, restore);
+                    log.info("item journal {} replayed, {} records", journal.getFileName(), count);
+                }
+            }
+            // 잘린 꼬리가 있을 수 있으므로 기존 로그에 이어 쓰지 않고 새 로그를 연다.
+            synchronized (appendLock) {
+                generation = lastGeneration + 1;
+                logChannel = open(journalPath(generation));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 주기적인 스냅샷을 시작한다. source 는 모든 상품의 (복사본) 상태를 넘겨준다.
+     */
+    public void start(Consumer<Consumer<Item>> source) {
+        this.snapshotSource = source;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "item-journal-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = snapshotInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (RuntimeException e) {
+                log.error("item snapshot failed", e);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 상품명이 로그에 남길 수 있는 길이인지 확인한다. 변경을 만들기 전에 호출해서, 덧붙이기 전에 거절한다.
+     */
+    public static void checkName(String itemName) {
+        int length = itemName != null ? nameBytes(itemName).length : 0;
+        if (length > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("item name too long: " + length + " bytes (max " + MAX_NAME_BYTES + ")");
+        }
+    }
+
+    /**
+     * 상품의 새 상태를 덧붙이고 위치를 돌려준다. 변경을 공개하기 전에, 변경을 공개하는 락을 잡은 채로 호출한다.
+     * 스냅샷 source 는 같은 락 안에서 시점을 잡아야 한다. 그래야 로그를 바꾸기 전에 덧붙인 레코드가 모두 스냅샷에 들어간다.
+     * 실패하면 변경을 공개하지 말고 되돌린다. 호출한 쪽에 결과를 돌려주기 전에 awaitDurable 로 기다려야 한다.
+     */
+    public long append(Item item) {
+        synchronized (appendLock) {
+            if (failure != null) {
+                throw new IllegalStateException("item journal failed, no more changes can be logged", failure);
+            }
+            appendBuffer.clear();
+            encode(appendBuffer, item);
+            appendBuffer.flip();
+            try {
+                while (appendBuffer.hasRemaining()) {
+                    logChannel.write(appendBuffer);
+                }
+            } catch (IOException e) {
+                failure = e;
+                throw new UncheckedIOException(e);
+            }
+            return ++appended;
+        }
+    }
+
+    /**
+     * position 까지 덧붙인 레코드가 디스크에 기록될 때까지 기다린다.
+     */
+    public void awaitDurable(long position) {
+        while (true) {
+            synchronized (syncLock) {
+                while (durable < position && syncing) {
+                    try {
+                        syncLock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("interrupted while waiting for item journal sync", e);
+                    }
+                }
+                if (durable >= position) {
+                    return;
+                }
+                syncing = true;
+            }
+            // fsync 하는 동안 다른 스레드들은 덧붙이고 기다린다. 다음 fsync 가 그것들을 한 번에 기록한다.
+            long synced = 0;
+            try {
+                synced = sync();
+            } finally {
+                synchronized (syncLock) {
+                    durable = Math.max(durable, synced);
+                    syncing = false;
+                    syncLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * 새 로그로 바꾼 뒤 전체 상품을 스냅샷으로 쓰고, 스냅샷 이전 파일들을 지운다.
+     */
+    public synchronized void snapshot() {
+        if (snapshotSource == null) {
+            return;
+        }
+        long snapshotGeneration = rotate();
+        Path temp = directory.resolve("snapshot-" + snapshotGeneration + ".tmp");
+        try {
+            long count;
+            try (FileChannel channel = FileChannel.open(temp,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                count = write(channel, snapshotSource);
+                channel.force(true);
+            }
+            Files.move(temp, directory.resolve(snapshotName(snapshotGeneration)), StandardCopyOption.ATOMIC_MOVE);
+            for (Path file : files(null)) {
+                if (generationOf(file) < snapshotGeneration) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            log.info("item snapshot {} written, {} items", snapshotName(snapshotGeneration), count);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 스냅샷을 멈추고, 마지막 스냅샷을 쓴 뒤 로그를 닫는다. 다음 시작은 스냅샷만 읽으면 된다.
+     */
+    @Override
+    public void close() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        snapshot();
+        synchronized (appendLock) {
+            if (logChannel != null) {
+                logChannel.force(false);
+                logChannel.close();
+            }
+        }
+    }
+
+    private long sync() {
+        FileChannel channel;
+        long position;
+        synchronized (appendLock) {
+            channel = logChannel;
+            position = appended;
+        }
+        try {
+            channel.force(false);
+        } catch (ClosedChannelException e) {
+            // 그 사이 로그가 바뀌었다. 바꿀 때 이전 로그를 fsync 했다.
+        } catch (IOException e) {
+            failure = e;
+            throw new UncheckedIOException(e);
+        }
+        return position;
+    }
+
+    private long rotate() {
+        synchronized (appendLock) {
+            try {
+                logChannel.force(false);
+                logChannel.close();
+                generation++;
+                logChannel = open(journalPath(generation));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return generation;
+        }
+    }
+
+    private long write(FileChannel channel, Consumer<Consumer<Item>> source) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        long[] count = new long[1];
+        try {
+            source.accept(item -> {
+                if (buffer.remaining() < MAX_RECORD_SIZE) {
+                    drain(channel, buffer);
+                }
+                encode(buffer, item);
+                count[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        drain(channel, buffer);
+        return count[0];
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * 파일을 MAP_WINDOW 단위로 mmap 해서 읽는다. 잘리거나 깨진 레코드를 만나면 멈춘다.
+     */
+    private static long read(Path file, Consumer<Item> restore) throws IOException {
+        long count = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long length = Math.min(MAP_WINDOW, size - position);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                boolean last = position + length == size;
+                // 창의 끝에 걸친 레코드는 다음 창에서 다시 읽는다.
+                while (window.remaining() >= HEADER_SIZE && (last || window.remaining() >= MAX_RECORD_SIZE)) {
+                    Item item = decode(window);
+                    if (item == null) {
+                        log.warn("item journal {} truncated at {}", file.getFileName(), position + window.position());
+                        return count;
+                    }
+                    restore.accept(item);
+                    count++;
+                }
+                if (last) {
+                    if (window.hasRemaining()) {
+                        log.warn("item journal {} truncated at {}", file.getFileName(), position + window.position());
+                    }
+                    return count;
+                }
+                position += window.position();
+            }
+        }
+        return count;
+    }
+
+    private static void encode(ByteBuffer buffer, Item item) {
+        byte[] name = item.getItemName() != null ? nameBytes(item.getItemName()) : new byte[0];
+        if (name.length > MAX_NAME_BYTES) {
+            // 길이를 short 로 남기므로, 넘으면 레코드가 깨진다.
+            throw new IllegalArgumentException("item name too long: " + name.length + " bytes (max " + MAX_NAME_BYTES + ")");
+        }
+        int flags = (item.getItemName() == null ? NULL_NAME : 0)
+                | (item.getPrice() == null ? NULL_PRICE : 0)
+                | (item.getQuantity() == null ? NULL_QUANTITY : 0);
+        int start = buffer.position();
+        buffer.position(start + HEADER_SIZE);
+        buffer.putLong(item.getId());
+        buffer.putLong(item.getVersion() != null ? item.getVersion() : 0L);
+        buffer.put((byte) flags);
+        buffer.putInt(item.getPrice() != null ? item.getPrice() : 0);
+        buffer.putInt(item.getQuantity() != null ? item.getQuantity() : 0);
+        buffer.putShort((short) name.length);
+        buffer.put(name);
+        int length = buffer.position() - start - HEADER_SIZE;
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(start + HEADER_SIZE).limit(buffer.position()));
+        buffer.putInt(start, length);
+        buffer.putInt(start + 4, (int) crc.getValue());
+    }
+
+    private static Item decode(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining()) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().limit(buffer.position() + length));
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        long id = buffer.getLong();
+        long version = buffer.getLong();
+        int flags = buffer.get();
+        int price = buffer.getInt();
+        int quantity = buffer.getInt();
+        byte[] name = new byte[buffer.getShort()];
+        buffer.get(name);
+
+        Item item = new Item((flags & NULL_NAME) != 0 ? null : new String(name, StandardCharsets.UTF_8),
+                (flags & NULL_PRICE) != 0 ? null : price,
+                (flags & NULL_QUANTITY) != 0 ? null : quantity);
+        item.setId(id);
+        item.setVersion(version);
+        return item;
+    }
+
+    private static byte[] nameBytes(String itemName) {
+        return itemName.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private List<Path> files(String kind) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(file -> {
+                        Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                        return matcher.matches() && (kind == null || matcher.group(1).equals(kind));
+                    })
+                    .sorted((a, b) -> Long.compare(generationOf(a), generationOf(b)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long generationOf(Path file) {
+        Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("not an item journal file: " + file);
+        }
+        return Long.parseLong(matcher.group(2));
+    }
+
+    private Path journalPath(long generation) {
+        return directory.resolve("journal-" + generation + ".log");
+    }
+
+    private static String snapshotName(long generation) {
+        return "snapshot-" + generation + ".snap";
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+}
@@ -1,62 +1,898 @@
 package hello.itemservice.repository.memory;
 
 import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAdjustDto;
+import hello.itemservice.repository.ItemAggregatesDto;
+import hello.itemservice.repository.ItemDto;
 import hello.itemservice.repository.ItemRepository;
 import hello.itemservice.repository.ItemSearchCond;
 import hello.itemservice.repository.ItemUpdateDto;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.ObjectUtils;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/**
+ * 다중 버전(MVCC) 메모리 저장소
+ *
+ * - 저장된 상품은 바꿀 수 없는 객체(FrozenItem)이고, 수정하면 새 객체를 만들어 버전 목록의 맨 앞에 붙인다.
+ *   조회 결과를 그대로 돌려줘도 호출한 쪽이 저장소를 망가뜨릴 수 없다.
+ * - 쓰기는 writeLock 으로 한 번에 하나씩 한다. 쓰기마다 커밋 번호를 하나 올리고, 만든 버전에 그 번호를 붙인 뒤
+ *   마지막에 committed 를 올려서 한 번에 공개한다. saveAll, updateAll, adjustAll 도 하나의 커밋 번호로 공개된다.
+ * - 읽기는 락을 잡지 않는다. 읽기 시작할 때의 committed 보다 큰 번호의 버전은 건너뛰므로,
+ *   검색 도중 수정이 있어도 한 시점의 일관된 목록을 본다.
+ * - 진행 중인 검색(ReadView)이 볼 수 있는 버전까지만 남기고, 더 오래된 버전은 다음 쓰기 때 끊어낸다.
+ * - 전체 집계(상품 수, 재고 금액, 가격 구간)는 버전을 붙일 때마다 이전 값을 빼고 새 값을 더해서 유지하고, 커밋할 때 함께 공개한다.
+ */
 @Repository
 public class MemoryItemRepository implements ItemRepository {
 
-    private static final Map<Long, Item> store = new HashMap<>(); //static
-    private static long sequence = 0L; //static
+    // 상품명 부분 검색용 n-gram 길이
+    private static final int GRAM_SIZE = 3;
+
+    // id 순으로 정렬되어 있어서 조회 결과 순서가 항상 일정하다. 값은 상품의 가장 최근 버전이다.
+    private static final ConcurrentNavigableMap<Long, Version> store = new ConcurrentSkipListMap<>(); //static
+    private static final AtomicLong sequence = new AtomicLong(); //static
+
+    // 쓰기 직렬화와 커밋 번호, 진행 중인 검색의 시점
+    private static final ReentrantLock writeLock = new ReentrantLock(); //static
+    private static volatile long committed; //static, writeLock 안에서만 올린다.
+    private static final ConcurrentSkipListSet<ReadView> readViews = new ConcurrentSkipListSet<>(); //static
+    private static final AtomicLong viewSequence = new AtomicLong(); //static
+
+    // 전체 집계, writeLock 으로 보호하고 커밋할 때 aggregates 로 공개한다.
+    private static long itemCount; //static
+    private static long inventoryValue; //static
+    private static final long[] priceHistogram = new long[ItemAggregatesDto.PRICE_BUCKET_BOUNDS.length + 1]; //static
+    private static volatile ItemAggregatesDto aggregates = new ItemAggregatesDto(); //static, 공개 후에는 바꾸지 않는다.
+
+    // 보조 인덱스 : 가격 구간(2의 거듭제곱 단위) -> id 인덱스, 상품명의 trigram -> id 인덱스
+    // 둘 다 id 순으로 정렬되어 있어서, 페이지 커서부터 필요한 만큼만 읽을 수 있다.
+    // 인덱스는 후보를 추리는 용도로만 사용하고, 최종 결과는 항상 실제 상품 값으로 다시 확인한다.
+    // 남아있는 모든 버전의 값이 인덱스에 들어있어서, 이전 시점을 보는 검색도 후보가 누락되지 않는다.
+    private static final IdSet[] priceIndex = new IdSet[Integer.SIZE]; //static
+    private static final ConcurrentMap<String, IdSet> nameIndex = new ConcurrentHashMap<>(); //static
+    private static volatile boolean nameIndexReady = true; // 복구 후 상품명 인덱스를 만드는 중이면 false
+
+    static {
+        for (int i = 0; i < priceIndex.length; i++) {
+            priceIndex[i] = new IdSet();
+        }
+    }
+
+    // 변경을 파일에 남겨서 재시작 후 복구한다. 없으면 메모리에만 저장한다.
+    private final ItemJournal journal;
+    // 이번 쓰기에서 만든, 아직 로그에 남기지 않은 버전 (writeLock)
+    private final List<Item> unjournaled = new ArrayList<>();
+
+    public MemoryItemRepository() {
+        this.journal = null;
+    }
+
+    /**
+     * 스냅샷과 로그로 상품을 복구한 뒤, 이후 변경은 모두 journal 에 남긴다.
+     */
+    public MemoryItemRepository(ItemJournal journal) {
+        this.journal = journal;
+        journal.recover(this::restore);
+        publish(committed);
+        buildNameIndex();
+        journal.start(this::forEachItem);
+    }
 
     @Override
     public Item save(Item item) {
-        item.setId(++sequence);
-        store.put(item.getId(), item);
+        long position;
+        writeLock.lock();
+        try {
+            checkName(item.getItemName());
+            long commit = committed + 1;
+            try {
+                item.setId(sequence.incrementAndGet());
+                item.setVersion(0L);
+                install(freeze(item, item.getId(), 0L), commit, oldestReadView());
+            } finally {
+                position = commit(commit);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        awaitDurable(position);
         return item;
     }
 
+    @Override
+    public List<Item> saveAll(Collection<Item> items) {
+        long position;
+        writeLock.lock();
+        try {
+            for (Item item : items) {
+                checkName(item.getItemName());
+            }
+            long commit = committed + 1;
+            long oldest = oldestReadView();
+            try {
+                // id 를 한 번에 필요한 만큼 할당받는다.
+                long id = sequence.getAndAdd(items.size());
+                for (Item item : items) {
+                    item.setId(++id);
+                    item.setVersion(0L);
+                    install(freeze(item, item.getId(), 0L), commit, oldest);
+                }
+            } finally {
+                position = commit(commit);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        // 한 번만 fsync 한다.
+        awaitDurable(position);
+        return new ArrayList<>(items);
+    }
+
     @Override
     public void update(Long itemId, ItemUpdateDto updateParam) {
-        Item findItem = findById(itemId).orElseThrow();
-        findItem.setItemName(updateParam.getItemName());
-        findItem.setPrice(updateParam.getPrice());
-        findItem.setQuantity(updateParam.getQuantity());
+        long position;
+        writeLock.lock();
+        try {
+            // 쓰기는 writeLock 안에서만 하므로, 최신 버전이 곧 커밋된 버전이다.
+            Version latest = store.get(itemId);
+            if (latest == null) {
+                throw new NoSuchElementException("item " + itemId + " not found");
+            }
+            Item findItem = latest.item;
+            if (updateParam.getVersion() != null && !updateParam.getVersion().equals(findItem.getVersion())) {
+                throw new OptimisticLockingFailureException(
+                        "item " + itemId + " was modified: version " + updateParam.getVersion() + " -> " + findItem.getVersion());
+            }
+            checkName(updateParam.getItemName());
+            long commit = committed + 1;
+            try {
+                apply(findItem, updateParam.getItemName(), updateParam.getPrice(), updateParam.getQuantity(),
+                        commit, oldestReadView());
+            } finally {
+                position = commit(commit);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        awaitDurable(position);
+    }
+
+    /**
+     * 버전이 있는 수정 중 하나라도 버전이 다르거나 상품이 없으면, 아무것도 바꾸지 않고 OptimisticLockingFailureException 이 발생한다.
+     */
+    @Override
+    public int updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        int count = 0;
+        long position;
+        writeLock.lock();
+        try {
+            for (Map.Entry<Long, ItemUpdateDto> entry : updateParams.entrySet()) {
+                Long version = entry.getValue().getVersion();
+                Version latest = store.get(entry.getKey());
+                if (version != null && (latest == null || !version.equals(latest.item.getVersion()))) {
+                    throw new OptimisticLockingFailureException("item " + entry.getKey() + " was modified or not found");
+                }
+                checkName(entry.getValue().getItemName());
+            }
+            long commit = committed + 1;
+            long oldest = oldestReadView();
+            try {
+                for (Map.Entry<Long, ItemUpdateDto> entry : updateParams.entrySet()) {
+                    Version latest = store.get(entry.getKey());
+                    if (latest == null) {
+                        continue;
+                    }
+                    ItemUpdateDto updateParam = entry.getValue();
+                    apply(latest.item,
+                            updateParam.getItemName(), updateParam.getPrice(), updateParam.getQuantity(), commit, oldest);
+                    count++;
+                }
+            } finally {
+                position = commit(commit);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        awaitDurable(position);
+        return count;
+    }
+
+    @Override
+    public int adjustAll(ItemSearchCond cond, ItemAdjustDto adjustParam) {
+        Integer priceRate = adjustParam.getPriceRate();
+        Integer quantityDelta = adjustParam.getQuantityDelta();
+        long position;
+        List<Item> items;
+        writeLock.lock();
+        try {
+            // 검색과 수정 사이에 다른 쓰기가 끼어들지 않도록 writeLock 안에서 최신 시점으로 검색한다.
+            items = search(new ItemSearchCond(cond.getItemName(), cond.getMaxPrice()), committed)
+                    .collect(Collectors.toList());
+            long commit = committed + 1;
+            long oldest = oldestReadView();
+            try {
+                for (Item item : items) {
+                    Integer price = item.getPrice();
+                    Integer quantity = item.getQuantity();
+                    if (priceRate != null && price != null) {
+                        price = price + price * priceRate / 100;
+                    }
+                    if (quantityDelta != null && quantity != null) {
+                        quantity = quantity + quantityDelta;
+                    }
+                    apply(item, item.getItemName(), price, quantity, commit, oldest);
+                }
+            } finally {
+                position = commit(commit);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        awaitDurable(position);
+        return items.size();
+    }
+
+    /**
+     * 상품의 새 버전을 만들어 붙인다. writeLock 안에서 호출한다.
+     */
+    private void apply(Item findItem, String itemName, Integer price, Integer quantity, long commit, long oldest) {
+        Item newItem = new Item(itemName, price, quantity);
+        install(freeze(newItem, findItem.getId(), findItem.getVersion() + 1), commit, oldest);
+    }
+
+    /**
+     * 새 버전을 버전 목록의 맨 앞에 붙인다. writeLock 안에서 호출하며, committed 를 올리기 전에는 읽기에 보이지 않는다.
+     * 진행 중인 검색 중 가장 오래된 시점(oldest)에서 보이는 버전보다 오래된 버전은 끊어내고, 그 버전에만 있던 인덱스를 지운다.
+     */
+    private void install(FrozenItem item, long commit, long oldest) {
+        Long id = item.getId();
+        Version latest = store.get(id);
+        Version version = new Version(item, commit, latest);
+
+        // 새 인덱스를 먼저 추가해서, 새 버전이 공개될 때 인덱스에 이미 들어있게 한다.
+        addIndex(id, item.getItemName(), item.getPrice());
+        store.put(id, version);
+        aggregate(latest != null ? latest.item : null, item);
+
+        Version keep = version;
+        while (keep != null && keep.commit > oldest) {
+            keep = keep.previous;
+        }
+        if (keep != null && keep.previous != null) {
+            Version dropped = keep.previous;
+            keep.previous = null;
+            removeIndex(id, dropped, version);
+        }
+        if (journal != null) {
+            unjournaled.add(item);
+        }
+    }
+
+    /**
+     * 이전 값(oldItem, 새 상품이면 null)을 빼고 새 값을 더한다. writeLock 안(또는 복구 중)에서 호출한다.
+     */
+    private static void aggregate(Item oldItem, Item newItem) {
+        if (oldItem != null) {
+            aggregate(oldItem, -1);
+        }
+        aggregate(newItem, 1);
+    }
+
+    /**
+     * 상품 하나를 집계에 더하거나(sign = 1) 뺀다(sign = -1).
+     */
+    private static void aggregate(Item item, int sign) {
+        itemCount += sign;
+        if (item.getPrice() != null && item.getQuantity() != null) {
+            inventoryValue += sign * (long) item.getPrice() * item.getQuantity();
+        }
+        if (item.getPrice() != null) {
+            priceHistogram[ItemAggregatesDto.bucketOf(item.getPrice())] += sign;
+        }
+    }
+
+    /**
+     * 집계를 공개한 뒤 커밋 번호를 올려서, 이번 쓰기의 버전들과 집계를 함께 보이게 한다. writeLock 안에서 호출한다.
+     */
+    private static void publish(long commit) {
+        aggregates = new ItemAggregatesDto(itemCount, inventoryValue, priceHistogram.clone());
+        committed = commit;
+    }
+
+    /**
+     * 이번 쓰기를 로그에 남긴 뒤 공개하고, 마지막으로 남긴 위치를 돌려준다. writeLock 안에서 호출한다.
+     * 로그에 남기지 못하면 이번 쓰기의 버전들을 되돌리고 공개하지 않는다.
+     * 스냅샷은 로그를 N+1 로 바꾼 다음 writeLock 안에서 ReadView 를 열므로(forEachItem), 로그 N 의 레코드는 모두 공개된 뒤에
+     * 스냅샷에 들어간다. 그래서 로그 N 을 지워도 잃지 않는다.
+     */
+    private long commit(long commit) {
+        long position = 0;
+        try {
+            for (Item item : unjournaled) {
+                position = journal.append(item);
+            }
+        } catch (RuntimeException e) {
+            rollback(commit);
+            throw e;
+        } finally {
+            unjournaled.clear();
+        }
+        publish(commit);
+        return position;
+    }
+
+    /**
+     * 공개하지 않은 이번 쓰기의 버전들을 버전 목록에서 떼어내고, 집계와 인덱스를 이전 버전으로 돌려놓는다.
+     * install 은 공개된 버전을 끊어내지 않으므로, 떼어낸 뒤의 맨 앞 버전이 곧 커밋된 버전이다.
+     */
+    private void rollback(long commit) {
+        for (int i = unjournaled.size() - 1; i >= 0; i--) {
+            Long id = unjournaled.get(i).getId();
+            Version version = store.get(id);
+            if (version == null || version.commit != commit) {
+                continue;
+            }
+            Version previous = version.previous;
+            if (previous != null) {
+                store.put(id, previous);
+            } else {
+                store.remove(id);
+            }
+            aggregate(version.item, -1);
+            if (previous != null) {
+                aggregate(previous.item, 1);
+            }
+            removeIndex(id, new Version(version.item, commit, null), previous);
+        }
+    }
+
+    private void awaitDurable(long position) {
+        if (journal != null && position > 0) {
+            journal.awaitDurable(position);
+        }
+    }
+
+    /**
+     * 복구한 상품을 넣는다. 이미 있으면 버전이 같거나 높을 때만 덮어쓴다.
+     * 복구 중에는 읽기, 쓰기가 없으므로 이전 버전은 남기지 않는다.
+     * 스냅샷은 id 순으로 쓰여 있어서, 대부분 skip list 의 끝에 붙는다.
+     * 상품명 인덱스는 복구가 끝난 뒤 buildNameIndex 에서 만든다.
+     */
+    private void restore(Item item) {
+        sequence.accumulateAndGet(item.getId(), Math::max);
+        Version latest = store.get(item.getId());
+        if (latest != null && latest.item.getVersion() > item.getVersion()) {
+            return;
+        }
+        Version version = new Version(freeze(item, item.getId(), item.getVersion()), committed, null);
+        store.put(item.getId(), version);
+        aggregate(latest != null ? latest.item : null, version.item);
+        if (item.getPrice() != null) {
+            priceIndex[priceBucket(item.getPrice())].add(item.getId());
+        }
+        if (latest != null) {
+            removeIndex(item.getId(), latest, version);
+        }
+    }
+
+    /**
+     * 상품명 인덱스는 상품마다 n-gram 수만큼 넣어야 해서 복구에서 가장 오래 걸리므로, 백그라운드에서 만든다.
+     * 다 만들어질 때까지 상품명 검색은 인덱스 없이 확인한다.
+     */
+    private void buildNameIndex() {
+        nameIndexReady = false;
+        Thread builder = new Thread(() -> {
+            for (Long id : store.keySet()) {
+                // 쓰기와 번갈아 가며, 그 시점에 남아있는 모든 버전의 상품명을 넣는다.
+                writeLock.lock();
+                try {
+                    for (Version version = store.get(id); version != null; version = version.previous) {
+                        addIndex(id, version.item.getItemName(), null);
+                    }
+                } finally {
+                    writeLock.unlock();
+                }
+            }
+            nameIndexReady = true;
+        }, "item-name-index");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    /**
+     * 스냅샷용으로 한 시점의 모든 상품을 id 순으로 넘겨준다. 상품은 바뀌지 않으므로 복사하지 않는다.
+     * 시점은 writeLock 안에서 잡는다. 로그에 남기고 아직 공개하지 않은 쓰기가 끝난 뒤의 시점이 된다.
+     */
+    private void forEachItem(Consumer<Item> action) {
+        ReadView view;
+        writeLock.lock();
+        try {
+            view = openReadView();
+        } finally {
+            writeLock.unlock();
+        }
+        try {
+            for (Version latest : store.values()) {
+                Item item = visible(latest, view.commit);
+                if (item != null) {
+                    action.accept(item);
+                }
+            }
+        } finally {
+            view.close();
+        }
     }
 
+    /**
+     * 락 없이 가장 최근에 커밋된 버전을 돌려준다.
+     * 맨 앞 버전이 아직 공개 전이면 그 바로 앞 버전이 커밋된 버전이다. (쓰기는 한 번에 하나)
+     * 이전 버전은 committed 보다 먼저 읽어야, 그 사이에 다음 쓰기가 끊어낸 빈 값을 읽지 않는다.
+     */
     @Override
     public Optional<Item> findById(Long id) {
-        return Optional.ofNullable(store.get(id));
+        Version latest = store.get(id);
+        if (latest == null) {
+            return Optional.empty();
+        }
+        Version previous = latest.previous;
+        Version version = latest.commit <= committed ? latest : previous;
+        return Optional.ofNullable(version != null ? version.item : null);
     }
 
     @Override
     public List<Item> findAll(ItemSearchCond cond) {
+        List<Item> result;
+        ReadView view = openReadView();
+        try {
+            result = search(cond, view.commit).collect(Collectors.toList());
+        } finally {
+            view.close();
+        }
+
+        // 이전 페이지는 beforeId 부터 역순으로 찾았으므로 다시 id 순으로 돌려놓는다.
+        if (cond.getBeforeId() != null) {
+            Collections.reverse(result);
+        }
+        return result;
+    }
+
+    /**
+     * commit 시점에 보이는 상품 중에서 조건에 맞는 상품을 찾는다.
+     */
+    private Stream<Item> search(ItemSearchCond cond, long commit) {
         String itemName = cond.getItemName();
         Integer maxPrice = cond.getMaxPrice();
-        return store.values().stream()
+        return candidates(cond)
+                .map(id -> visible(store.get(id), commit))
+                .filter(Objects::nonNull)
                 .filter(item -> {
                     if (ObjectUtils.isEmpty(itemName)) {
                         return true;
                     }
-                    return item.getItemName().contains(itemName);
+                    return item.getItemName() != null && item.getItemName().contains(itemName);
                 }).filter(item -> {
                     if (maxPrice == null) {
                         return true;
                     }
-                    return item.getPrice() <= maxPrice;
+                    return item.getPrice() != null && item.getPrice() <= maxPrice;
                 })
+                .limit(cond.getSize() != null ? cond.getSize() : Long.MAX_VALUE);
+    }
+
+    /**
+     * 마지막 커밋 시점의 집계, 공개된 값을 복사만 하므로 상품 수와 관계없이 일정하다.
+     */
+    @Override
+    public ItemAggregatesDto aggregates() {
+        ItemAggregatesDto published = aggregates;
+        return new ItemAggregatesDto(published.getItemCount(), published.getInventoryValue(),
+                published.getPriceHistogram().clone());
+    }
+
+    @Override
+    public Optional<ItemDto> findDtoById(Long id) {
+        return findById(id).map(MemoryItemRepository::toDto);
+    }
+
+    @Override
+    public List<ItemDto> findAllDto(ItemSearchCond cond) {
+        return findAll(cond).stream()
+                .map(MemoryItemRepository::toDto)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * 결과를 목록으로 모으지 않고 한 건씩 넘겨준다. 다 넘겨줄 때까지 같은 시점을 본다.
+     */
+    @Override
+    public void forEachDto(ItemSearchCond cond, Consumer<ItemDto> action) {
+        ReadView view = openReadView();
+        try {
+            search(cond, view.commit).map(MemoryItemRepository::toDto).forEach(action);
+        } finally {
+            view.close();
+        }
+    }
+
+    private static ItemDto toDto(Item item) {
+        return new ItemDto(item.getId(), item.getItemName(), item.getPrice(), item.getQuantity());
+    }
+
+    /**
+     * commit 시점에 보이는 버전, 그 시점에 상품이 없었으면 null
+     */
+    private static Item visible(Version version, long commit) {
+        while (version != null && version.commit > commit) {
+            version = version.previous;
+        }
+        return version != null ? version.item : null;
+    }
+
+    /**
+     * 현재 커밋 시점으로 검색을 시작한다.
+     * 등록하기 전에 다른 쓰기가 커밋했으면, 그 쓰기가 이 시점을 모르고 버전을 끊어냈을 수 있으므로 다시 등록한다.
+     */
+    private static ReadView openReadView() {
+        while (true) {
+            ReadView view = new ReadView(committed, viewSequence.incrementAndGet());
+            readViews.add(view);
+            if (view.commit == committed) {
+                return view;
+            }
+            view.close();
+        }
+    }
+
+    /**
+     * 진행 중인 검색 중 가장 오래된 시점, 없으면 현재 커밋 시점. writeLock 안에서 호출한다.
+     */
+    private static long oldestReadView() {
+        ReadView oldest = readViews.isEmpty() ? null : readViews.first();
+        return oldest != null ? Math.min(oldest.commit, committed) : committed;
+    }
+
+    /**
+     * 인덱스로 검색 후보 id 를 추린다. 후보는 페이지 커서부터 id 순(beforeId 면 역순)으로 필요한 만큼만 꺼낸다.
+     *
+     * - 상품명 : 검색어의 모든 trigram 목록의 교집합, 가장 짧은 목록을 차례로 읽으면서 나머지 목록에 있는지 확인한다.
+     * - 가격 : maxPrice 이하 가격 구간들의 id 목록을 id 순으로 합쳐서 읽는다. (경계 구간의 비싼 상품은 값으로 걸러진다)
+     * - 둘 다 있으면 더 짧은 쪽을 읽는다. 상품명이 n-gram 보다 짧거나 상품명 인덱스를 만드는 중이면 가격 인덱스를,
+     *   둘 다 없으면 전체를 사용한다.
+     */
+    private Stream<Long> candidates(ItemSearchCond cond) {
+        String itemName = cond.getItemName();
+        Integer maxPrice = cond.getMaxPrice();
+
+        List<IdSet> grams = null;
+        if (itemName != null && itemName.length() >= GRAM_SIZE && nameIndexReady) {
+            grams = new ArrayList<>();
+            for (String gram : grams(itemName)) {
+                IdSet ids = nameIndex.get(gram);
+                if (ids == null) {
+                    return Stream.empty();
+                }
+                grams.add(ids);
+            }
+            grams.sort(Comparator.comparingInt(IdSet::size));
+        }
+        List<IdSet> prices = null;
+        long priceCount = 0;
+        if (maxPrice != null) {
+            prices = new ArrayList<>();
+            for (int bucket = 0; bucket <= priceBucket(maxPrice); bucket++) {
+                prices.add(priceIndex[bucket]);
+                priceCount += priceIndex[bucket].size();
+            }
+        }
+
+        if (grams != null && (prices == null || grams.get(0).size() <= priceCount)) {
+            List<IdSet> others = grams.subList(1, grams.size());
+            return stream(range(grams.get(0), cond).iterator())
+                    .filter(id -> others.stream().allMatch(ids -> ids.contains(id)));
+        }
+        if (prices != null) {
+            List<Iterator<Long>> iterators = new ArrayList<>(prices.size());
+            for (IdSet ids : prices) {
+                iterators.add(range(ids, cond).iterator());
+            }
+            return stream(new MergingIterator(iterators, cond.getBeforeId() != null));
+        }
+        return stream(range(store.navigableKeySet(), cond).iterator());
+    }
+
+    /**
+     * 페이지 커서 범위로 자른 id 목록, 이전 페이지(beforeId)면 역순이다.
+     */
+    private static NavigableSet<Long> range(NavigableSet<Long> ids, ItemSearchCond cond) {
+        if (cond.getAfterId() != null) {
+            ids = ids.tailSet(cond.getAfterId(), false);
+        }
+        if (cond.getBeforeId() != null) {
+            ids = ids.headSet(cond.getBeforeId(), false).descendingSet();
+        }
+        return ids;
+    }
+
+    private static Stream<Long> stream(Iterator<Long> iterator) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * 가격 구간 : 0 이하는 0, 그 외에는 2의 거듭제곱 단위 ([1, 2), [2, 4), [4, 8) ...)
+     */
+    private static int priceBucket(int price) {
+        return price <= 0 ? 0 : Integer.SIZE - Integer.numberOfLeadingZeros(price) - 1;
+    }
+
+    private void addIndex(Long id, String itemName, Integer price) {
+        if (price != null) {
+            priceIndex[priceBucket(price)].add(id);
+        }
+        for (String gram : grams(itemName)) {
+            nameIndex.compute(gram, (k, ids) -> {
+                IdSet result = ids != null ? ids : new IdSet();
+                result.add(id);
+                return result;
+            });
+        }
+    }
+
+    /**
+     * 끊어낸 버전(dropped 부터 끝까지)의 값 중, 남은 버전(retained 부터 끝까지)에 없는 값만 인덱스에서 지운다.
+     */
+    private void removeIndex(Long id, Version dropped, Version retained) {
+        Set<Integer> retainedBuckets = new HashSet<>();
+        Set<String> retainedGrams = new HashSet<>();
+        for (Version version = retained; version != null; version = version.previous) {
+            if (version.item.getPrice() != null) {
+                retainedBuckets.add(priceBucket(version.item.getPrice()));
+            }
+            retainedGrams.addAll(grams(version.item.getItemName()));
+        }
+        for (Version version = dropped; version != null; version = version.previous) {
+            Integer oldPrice = version.item.getPrice();
+            if (oldPrice != null && !retainedBuckets.contains(priceBucket(oldPrice))) {
+                priceIndex[priceBucket(oldPrice)].remove(id);
+            }
+            for (String gram : grams(version.item.getItemName())) {
+                if (retainedGrams.contains(gram)) {
+                    continue;
+                }
+                // compute, computeIfPresent 는 키 단위로 원자적이라, 비어있는 목록을 지워도 동시에 추가된 id 가 사라지지 않는다.
+                nameIndex.computeIfPresent(gram, (k, ids) -> {
+                    ids.remove(id);
+                    return ids.isEmpty() ? null : ids;
+                });
+            }
+        }
+    }
+
+    private static Set<String> grams(String itemName) {
+        if (itemName == null || itemName.length() < GRAM_SIZE) {
+            return Collections.emptySet();
+        }
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_SIZE <= itemName.length(); i++) {
+            grams.add(itemName.substring(i, i + GRAM_SIZE));
+        }
+        return grams;
+    }
+
+    /**
+     * 로그에 남길 수 없는 상품명은 버전을 만들기 전에 거절한다. 로그가 없으면 길이 제한도 없다.
+     */
+    private void checkName(String itemName) {
+        if (journal != null) {
+            ItemJournal.checkName(itemName);
+        }
+    }
+
+    private static FrozenItem freeze(Item item, Long id, Long version) {
+        return new FrozenItem(item.getItemName(), item.getPrice(), item.getQuantity(), id, version);
+    }
+
     public void clearStore() {
-        store.clear();
+        writeLock.lock();
+        try {
+            store.clear();
+            for (IdSet ids : priceIndex) {
+                ids.clear();
+            }
+            nameIndex.clear();
+            itemCount = 0;
+            inventoryValue = 0;
+            Arrays.fill(priceHistogram, 0);
+            publish(committed);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 상품의 한 버전, previous 는 바로 이전 버전이다.
+     */
+    private static class Version {
+
+        private final FrozenItem item;
+        private final long commit;
+        private volatile Version previous; // 끊어낼 때만 null 로 바꾼다.
+
+        Version(FrozenItem item, long commit, Version previous) {
+            this.item = item;
+            this.commit = commit;
+            this.previous = previous;
+        }
+    }
+
+    /**
+     * 저장소가 돌려주는 상품, 값을 바꾸려고 하면 UnsupportedOperationException 이 발생한다.
+     * 수정은 ItemRepository.update 로 한다.
+     */
+    private static class FrozenItem extends Item {
+
+        FrozenItem(String itemName, Integer price, Integer quantity, Long id, Long version) {
+            super(itemName, price, quantity);
+            super.setId(id);
+            super.setVersion(version);
+        }
+
+        @Override
+        public void setId(Long id) {
+            throw new UnsupportedOperationException("item is read-only");
+        }
+
+        @Override
+        public void setItemName(String itemName) {
+            throw new UnsupportedOperationException("item is read-only");
+        }
+
+        @Override
+        public void setPrice(Integer price) {
+            throw new UnsupportedOperationException("item is read-only");
+        }
+
+        @Override
+        public void setQuantity(Integer quantity) {
+            throw new UnsupportedOperationException("item is read-only");
+        }
+
+        @Override
+        public void setVersion(Long version) {
+            throw new UnsupportedOperationException("item is read-only");
+        }
+    }
+
+    /**
+     * 진행 중인 검색이 보는 커밋 시점, 같은 시점의 검색끼리는 seq 로 구분한다.
+     */
+    private static class ReadView implements Comparable<ReadView> {
+
+        private final long commit;
+        private final long seq;
+
+        ReadView(long commit, long seq) {
+            this.commit = commit;
+            this.seq = seq;
+        }
+
+        void close() {
+            readViews.remove(this);
+        }
+
+        @Override
+        public int compareTo(ReadView other) {
+            int result = Long.compare(commit, other.commit);
+            return result != 0 ? result : Long.compare(seq, other.seq);
+        }
+    }
+
+    /**
+     * 크기를 따로 세는 id 목록, ConcurrentSkipListSet.size() 는 전체를 훑으므로 교집합 순서를 정할 때 이 값을 쓴다.
+     */
+    private static class IdSet extends ConcurrentSkipListSet<Long> {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public boolean add(Long id) {
+            boolean added = super.add(id);
+            if (added) {
+                count.incrementAndGet();
+            }
+            return added;
+        }
+
+        @Override
+        public boolean remove(Object id) {
+            boolean removed = super.remove(id);
+            if (removed) {
+                count.decrementAndGet();
+            }
+            return removed;
+        }
+
+        @Override
+        public void clear() {
+            for (Long id : this) {
+                remove(id);
+            }
+        }
+
+        @Override
+        public int size() {
+            return count.get();
+        }
+    }
+
+    /**
+     * id 순으로 정렬된 여러 목록을 하나의 id 순서로 합친다. 각 목록에서 다음 id 하나씩만 들고 있는다.
+     */
+    private static class MergingIterator implements Iterator<Long> {
+
+        private final PriorityQueue<Head> heads;
+
+        MergingIterator(List<Iterator<Long>> iterators, boolean descending) {
+            Comparator<Head> order = Comparator.comparingLong(head -> head.id);
+            this.heads = new PriorityQueue<>(Math.max(1, iterators.size()), descending ? order.reversed() : order);
+            for (Iterator<Long> iterator : iterators) {
+                if (iterator.hasNext()) {
+                    heads.add(new Head(iterator.next(), iterator));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public Long next() {
+            Head head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            long id = head.id;
+            advance(head);
+            // 이전 버전을 읽는 ReadView 를 위해 남겨둔 색인 때문에, 같은 id 가 여러 가격 구간에 있을 수 있다.
+            while (!heads.isEmpty() && heads.peek().id == id) {
+                advance(heads.poll());
+            }
+            return id;
+        }
+
+        private void advance(Head head) {
+            if (head.iterator.hasNext()) {
+                heads.add(new Head(head.iterator.next(), head.iterator));
+            }
+        }
+
+        private static class Head {
+
+            private final long id;
+            private final Iterator<Long> iterator;
+
+            Head(long id, Iterator<Long> iterator) {
+                this.id = id;
+                this.iterator = iterator;
+            }
+        }
     }
 
 }
@@ -0,0 +1,402 @@
+package hello.itemservice.repository.memory;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAdjustDto;
+import hello.itemservice.repository.ItemDto;
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemUpdateDto;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * 상품을 id 해시로 여러 샤드에 나눠 저장하는 메모리 저장소
+ *
+ * - 샤드마다 id 순 TreeMap 과 읽기/쓰기 락을 따로 두어, 다른 샤드의 상품을 다루는 요청끼리는 서로 기다리지 않는다.
+ * - 검색은 샤드마다 조건에 맞는 상품을 id 순으로 size 개까지 찾고, 그 결과를 id 순으로 병합한다.
+ *   전체 상품 수가 parallelThreshold 이상이면 fork-join 풀에서 샤드들을 나눠서 동시에 찾고,
+ *   그보다 적으면 작업을 나누는 비용이 더 크므로 호출한 스레드에서 차례로 찾는다.
+ * - 저장된 Item 은 샤드 락 안에서만 읽고 고치며, 밖으로는 복사본을 돌려준다.
+ */
+public class ShardedItemRepository implements ItemRepository {
+
+    private static final Comparator<Item> ID_ORDER = Comparator.comparing(Item::getId);
+
+    private final Shard[] shards;
+    private final ForkJoinPool pool;
+    private final int parallelThreshold;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public ShardedItemRepository(int shardCount, ForkJoinPool pool, int parallelThreshold) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("shardCount must be positive: " + shardCount);
+        }
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard();
+        }
+        this.pool = pool;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    @Override
+    public Item save(Item item) {
+        item.setId(sequence.incrementAndGet());
+        item.setVersion(0L);
+        Shard shard = shard(item.getId());
+        shard.lock.writeLock().lock();
+        try {
+            shard.put(copy(item));
+        } finally {
+            shard.lock.writeLock().unlock();
+        }
+        return item;
+    }
+
+    @Override
+    public List<Item> saveAll(Collection<Item> items) {
+        // id 를 한 번에 할당받고, 샤드별로 모아서 샤드마다 락을 한 번만 잡는다.
+        long id = sequence.getAndAdd(items.size());
+        List<List<Item>> byShard = emptyLists();
+        for (Item item : items) {
+            item.setId(++id);
+            item.setVersion(0L);
+            byShard.get(index(item.getId())).add(copy(item));
+        }
+        for (int i = 0; i < shards.length; i++) {
+            if (byShard.get(i).isEmpty()) {
+                continue;
+            }
+            Shard shard = shards[i];
+            shard.lock.writeLock().lock();
+            try {
+                byShard.get(i).forEach(shard::put);
+            } finally {
+                shard.lock.writeLock().unlock();
+            }
+        }
+        return new ArrayList<>(items);
+    }
+
+    @Override
+    public void update(Long itemId, ItemUpdateDto updateParam) {
+        Shard shard = shard(itemId);
+        shard.lock.writeLock().lock();
+        try {
+            Item findItem = shard.items.get(itemId);
+            if (findItem == null) {
+                throw new NoSuchElementException("item " + itemId + " not found");
+            }
+            if (updateParam.getVersion() != null && !updateParam.getVersion().equals(findItem.getVersion())) {
+                throw new OptimisticLockingFailureException(
+                        "item " + itemId + " was modified: version " + updateParam.getVersion() + " -> " + findItem.getVersion());
+            }
+            apply(findItem, updateParam.getItemName(), updateParam.getPrice(), updateParam.getQuantity());
+        } finally {
+            shard.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        List<List<Map.Entry<Long, ItemUpdateDto>>> byShard = emptyLists();
+        for (Map.Entry<Long, ItemUpdateDto> entry : updateParams.entrySet()) {
+            byShard.get(index(entry.getKey())).add(entry);
+        }
+        // 버전을 모두 확인한 뒤에 바꾸도록 관련 샤드의 락을 샤드 순서대로 모두 잡는다. (순서가 같아서 교착되지 않는다)
+        List<Shard> locked = new ArrayList<>();
+        try {
+            for (int i = 0; i < shards.length; i++) {
+                if (!byShard.get(i).isEmpty()) {
+                    shards[i].lock.writeLock().lock();
+                    locked.add(shards[i]);
+                }
+            }
+            for (int i = 0; i < shards.length; i++) {
+                for (Map.Entry<Long, ItemUpdateDto> entry : byShard.get(i)) {
+                    Long version = entry.getValue().getVersion();
+                    Item findItem = shards[i].items.get(entry.getKey());
+                    if (version != null && (findItem == null || !version.equals(findItem.getVersion()))) {
+                        throw new OptimisticLockingFailureException("item " + entry.getKey() + " was modified or not found");
+                    }
+                }
+            }
+            int count = 0;
+            for (int i = 0; i < shards.length; i++) {
+                for (Map.Entry<Long, ItemUpdateDto> entry : byShard.get(i)) {
+                    Item findItem = shards[i].items.get(entry.getKey());
+                    if (findItem == null) {
+                        continue;
+                    }
+                    ItemUpdateDto updateParam = entry.getValue();
+                    apply(findItem, updateParam.getItemName(), updateParam.getPrice(), updateParam.getQuantity());
+                    count++;
+                }
+            }
+            return count;
+        } finally {
+            for (Shard shard : locked) {
+                shard.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public int adjustAll(ItemSearchCond cond, ItemAdjustDto adjustParam) {
+        Integer priceRate = adjustParam.getPriceRate();
+        Integer quantityDelta = adjustParam.getQuantityDelta();
+        List<Item> items = findAll(new ItemSearchCond(cond.getItemName(), cond.getMaxPrice()));
+        for (Item item : items) {
+            Shard shard = shard(item.getId());
+            shard.lock.writeLock().lock();
+            try {
+                Item findItem = shard.items.get(item.getId());
+                if (findItem == null) {
+                    continue;
+                }
+                Integer price = findItem.getPrice();
+                Integer quantity = findItem.getQuantity();
+                if (priceRate != null && price != null) {
+                    price = price + price * priceRate / 100;
+                }
+                if (quantityDelta != null && quantity != null) {
+                    quantity = quantity + quantityDelta;
+                }
+                apply(findItem, findItem.getItemName(), price, quantity);
+            } finally {
+                shard.lock.writeLock().unlock();
+            }
+        }
+        return items.size();
+    }
+
+    private static void apply(Item findItem, String itemName, Integer price, Integer quantity) {
+        findItem.setItemName(itemName);
+        findItem.setPrice(price);
+        findItem.setQuantity(quantity);
+        findItem.setVersion(findItem.getVersion() + 1);
+    }
+
+    @Override
+    public Optional<Item> findById(Long id) {
+        Shard shard = shard(id);
+        shard.lock.readLock().lock();
+        try {
+            Item findItem = shard.items.get(id);
+            return Optional.ofNullable(findItem != null ? copy(findItem) : null);
+        } finally {
+            shard.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Item> findAll(ItemSearchCond cond) {
+        List<Item> result;
+        if (shards.length == 1 || size() < parallelThreshold) {
+            result = new SearchTask(cond, 0, shards.length).compute();
+        } else {
+            result = pool.invoke(new SearchTask(cond, 0, shards.length));
+        }
+
+        // 이전 페이지는 beforeId 부터 역순으로 찾았으므로 다시 id 순으로 돌려놓는다.
+        if (cond.getBeforeId() != null) {
+            Collections.reverse(result);
+        }
+        return result;
+    }
+
+    @Override
+    public Optional<ItemDto> findDtoById(Long id) {
+        return findById(id).map(ShardedItemRepository::toDto);
+    }
+
+    @Override
+    public List<ItemDto> findAllDto(ItemSearchCond cond) {
+        return findAll(cond).stream()
+                .map(ShardedItemRepository::toDto)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 샤드별 결과를 병합해야 id 순서가 정해지므로, 검색을 끝낸 뒤 한 건씩 넘겨준다.
+     */
+    @Override
+    public void forEachDto(ItemSearchCond cond, Consumer<ItemDto> action) {
+        findAll(cond).stream().map(ShardedItemRepository::toDto).forEach(action);
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * 샤드별 상품 수의 합, 검색을 병렬로 할지 정하는 데만 쓰므로 샤드 락 없이 읽는다.
+     */
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.size;
+        }
+        return size;
+    }
+
+    public void clearStore() {
+        for (Shard shard : shards) {
+            shard.lock.writeLock().lock();
+            try {
+                shard.items.clear();
+                shard.size = 0;
+            } finally {
+                shard.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private int index(Long id) {
+        // id 는 순서대로 발급되므로 나머지만으로도 고르게 나뉜다. 음수가 되지 않게 floorMod 를 쓴다.
+        return (int) Math.floorMod(id, (long) shards.length);
+    }
+
+    private Shard shard(Long id) {
+        return shards[index(id)];
+    }
+
+    private <T> List<List<T>> emptyLists() {
+        List<List<T>> lists = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            lists.add(new ArrayList<>());
+        }
+        return lists;
+    }
+
+    private static Item copy(Item item) {
+        Item copy = new Item(item.getItemName(), item.getPrice(), item.getQuantity());
+        copy.setId(item.getId());
+        copy.setVersion(item.getVersion());
+        return copy;
+    }
+
+    private static ItemDto toDto(Item item) {
+        return new ItemDto(item.getId(), item.getItemName(), item.getPrice(), item.getQuantity());
+    }
+
+    /**
+     * 샤드 하나에서 조건에 맞는 상품을 찾는다. beforeId 가 있으면 id 역순, 아니면 id 순으로 size 개까지 찾는다.
+     */
+    private static List<Item> search(Shard shard, ItemSearchCond cond) {
+        String itemName = cond.getItemName();
+        Integer maxPrice = cond.getMaxPrice();
+        long limit = cond.getSize() != null ? cond.getSize() : Long.MAX_VALUE;
+
+        List<Item> result = new ArrayList<>();
+        shard.lock.readLock().lock();
+        try {
+            NavigableMap<Long, Item> items = shard.items;
+            if (cond.getAfterId() != null) {
+                items = items.tailMap(cond.getAfterId(), false);
+            }
+            if (cond.getBeforeId() != null) {
+                items = items.headMap(cond.getBeforeId(), false).descendingMap();
+            }
+            for (Item item : items.values()) {
+                if (result.size() >= limit) {
+                    break;
+                }
+                if (!ObjectUtils.isEmpty(itemName)
+                        && (item.getItemName() == null || !item.getItemName().contains(itemName))) {
+                    continue;
+                }
+                if (maxPrice != null && (item.getPrice() == null || item.getPrice() > maxPrice)) {
+                    continue;
+                }
+                result.add(copy(item));
+            }
+        } finally {
+            shard.lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * 두 결과를 정렬 순서대로 병합하고 limit 개에서 자른다.
+     */
+    private static List<Item> merge(List<Item> left, List<Item> right, Comparator<Item> order, long limit) {
+        List<Item> result = new ArrayList<>((int) Math.min(limit, left.size() + right.size()));
+        int l = 0;
+        int r = 0;
+        while (result.size() < limit && (l < left.size() || r < right.size())) {
+            if (r == right.size() || (l < left.size() && order.compare(left.get(l), right.get(r)) <= 0)) {
+                result.add(left.get(l++));
+            } else {
+                result.add(right.get(r++));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * shards[from, to) 를 반으로 나눠 한쪽은 fork 하고 다른 쪽은 직접 찾은 뒤 병합한다.
+     */
+    private class SearchTask extends RecursiveTask<List<Item>> {
+
+        private final ItemSearchCond cond;
+        private final int from;
+        private final int to;
+
+        SearchTask(ItemSearchCond cond, int from, int to) {
+            this.cond = cond;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Item> compute() {
+            if (to - from == 1) {
+                return search(shards[from], cond);
+            }
+            int mid = (from + to) >>> 1;
+            SearchTask left = new SearchTask(cond, from, mid);
+            SearchTask right = new SearchTask(cond, mid, to);
+            List<Item> rightResult;
+            List<Item> leftResult;
+            if (inForkJoinPool()) {
+                left.fork();
+                rightResult = right.compute();
+                leftResult = left.join();
+            } else {
+                leftResult = left.compute();
+                rightResult = right.compute();
+            }
+            Comparator<Item> order = cond.getBeforeId() != null ? ID_ORDER.reversed() : ID_ORDER;
+            return merge(leftResult, rightResult, order, cond.getSize() != null ? cond.getSize() : Long.MAX_VALUE);
+        }
+    }
+
+    private static class Shard {
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final TreeMap<Long, Item> items = new TreeMap<>(); // lock 으로 보호한다.
+        private volatile int size;
+
+        void put(Item item) {
+            items.put(item.getId(), item);
+            size = items.size();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package hello.itemservice.repository.metrics;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAdjustDto;
+import hello.itemservice.repository.ItemAggregatesDto;
+import hello.itemservice.repository.ItemDto;
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemUpdateDto;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import org.springframework.util.ClassUtils;
+
+/**
+ * 연산별 지연 시간(item.repository, 히스토그램 포함)과 조회 행 수(item.repository.rows)를 기록하는 ItemRepository 데코레이터
+ * 어떤 ItemRepository 구현체든 감쌀 수 있고, backend 태그로 구현체를 구분한다.
+ * 미터는 생성 시점에 모두 등록해 두고, 호출마다 레지스트리를 조회하지 않는다.
+ */
+public class MeteredItemRepository implements ItemRepository {
+
+    private final ItemRepository target;
+
+    private final Timer saveTimer;
+    private final Timer saveAllTimer;
+    private final Timer updateTimer;
+    private final Timer updateAllTimer;
+    private final Timer adjustAllTimer;
+    private final Timer findByIdTimer;
+    private final Timer findAllTimer;
+    private final Timer findDtoByIdTimer;
+    private final Timer findAllDtoTimer;
+    private final Timer forEachDtoTimer;
+    private final Timer aggregatesTimer;
+
+    private final DistributionSummary findAllRows;
+    private final DistributionSummary findAllDtoRows;
+    private final DistributionSummary forEachDtoRows;
+
+    public MeteredItemRepository(ItemRepository target, MeterRegistry registry) {
+        this.target = target;
+        String backend = ClassUtils.getUserClass(target).getSimpleName();
+        this.saveTimer = timer(registry, backend, "save");
+        this.saveAllTimer = timer(registry, backend, "saveAll");
+        this.updateTimer = timer(registry, backend, "update");
+        this.updateAllTimer = timer(registry, backend, "updateAll");
+        this.adjustAllTimer = timer(registry, backend, "adjustAll");
+        this.findByIdTimer = timer(registry, backend, "findById");
+        this.findAllTimer = timer(registry, backend, "findAll");
+        this.findDtoByIdTimer = timer(registry, backend, "findDtoById");
+        this.findAllDtoTimer = timer(registry, backend, "findAllDto");
+        this.forEachDtoTimer = timer(registry, backend, "forEachDto");
+        this.aggregatesTimer = timer(registry, backend, "aggregates");
+        this.findAllRows = rows(registry, backend, "findAll");
+        this.findAllDtoRows = rows(registry, backend, "findAllDto");
+        this.forEachDtoRows = rows(registry, backend, "forEachDto");
+    }
+
+    @Override
+    public Item save(Item item) {
+        return saveTimer.record(() -> target.save(item));
+    }
+
+    @Override
+    public List<Item> saveAll(Collection<Item> items) {
+        return saveAllTimer.record(() -> target.saveAll(items));
+    }
+
+    @Override
+    public void update(Long itemId, ItemUpdateDto updateParam) {
+        updateTimer.record(() -> target.update(itemId, updateParam));
+    }
+
+    @Override
+    public int updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        return updateAllTimer.record(() -> target.updateAll(updateParams));
+    }
+
+    @Override
+    public int adjustAll(ItemSearchCond cond, ItemAdjustDto adjustParam) {
+        return adjustAllTimer.record(() -> target.adjustAll(cond, adjustParam));
+    }
+
+    @Override
+    public Optional<Item> findById(Long id) {
+        return findByIdTimer.record(() -> target.findById(id));
+    }
+
+    @Override
+    public List<Item> findAll(ItemSearchCond cond) {
+        List<Item> result = findAllTimer.record(() -> target.findAll(cond));
+        findAllRows.record(result.size());
+        return result;
+    }
+
+    @Override
+    public Optional<ItemDto> findDtoById(Long id) {
+        return findDtoByIdTimer.record(() -> target.findDtoById(id));
+    }
+
+    @Override
+    public List<ItemDto> findAllDto(ItemSearchCond cond) {
+        List<ItemDto> result = findAllDtoTimer.record(() -> target.findAllDto(cond));
+        findAllDtoRows.record(result.size());
+        return result;
+    }
+
+    @Override
+    public void forEachDto(ItemSearchCond cond, Consumer<ItemDto> action) {
+        long[] rows = {0};
+        forEachDtoTimer.record(() -> target.forEachDto(cond, item -> {
+            rows[0]++;
+            action.accept(item);
+        }));
+        forEachDtoRows.record(rows[0]);
+    }
+
+    @Override
+    public ItemAggregatesDto aggregates() {
+        return aggregatesTimer.record(target::aggregates);
+    }
+
+    public ItemRepository getTarget() {
+        return target;
+    }
+
+    private static Timer timer(MeterRegistry registry, String backend, String method) {
+        return Timer.builder("item.repository")
+                .tag("backend", backend)
+                .tag("method", method)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static DistributionSummary rows(MeterRegistry registry, String backend, String method) {
+        return DistributionSummary.builder("item.repository.rows")
+                .tag("backend", backend)
+                .tag("method", method)
+                .baseUnit("rows")
+                .register(registry);
+    }
+}
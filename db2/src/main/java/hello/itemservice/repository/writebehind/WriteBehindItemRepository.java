@@ -0,0 +1,434 @@
+package hello.itemservice.repository.writebehind;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAdjustDto;
+import hello.itemservice.repository.ItemAggregatesDto;
+import hello.itemservice.repository.ItemDto;
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemUpdateDto;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionOperations;
+
+/**
+ * save, update 를 대기열에 모아서 한 트랜잭션으로 반영하는 ItemRepository 데코레이터 (write-behind)
+ *
+ * - update 는 대기열에 넣고 바로 반환한다. 같은 id 의 수정은 마지막 값 하나로 합쳐진다.
+ * - save 는 id 가 필요하므로 반영될 때까지 기다린다. 반영 중에 들어온 save 들은 다음 묶음으로 함께 반영된다.
+ * - 대기열이 batchSize 이상이 되거나 flushInterval 이 지나면 반영하고, capacity 가 가득 차면 쓰는 쪽이 기다린다.
+ * - findById, findDtoById 는 아직 반영되지 않은 수정을 덮어써서 돌려준다. (같은 서버에서 read-your-writes)
+ *   이때 버전은 반영된 뒤의 버전(저장된 버전 + 1)으로 돌려준다. 버전으로 만든 ETag 가 수정 직후에도 달라지고,
+ *   그 버전으로 보낸 수정 폼은 대기열을 반영한 뒤에 확인하므로 충돌하지 않는다.
+ *   검색은 대기 중인 쓰기를 먼저 반영한 뒤에 조회한다.
+ * - close() 는 남은 쓰기를 모두 반영하고 끝난다. 빈으로 등록해서 종료 시 호출되게 한다.
+ *
+ * 묶음 반영이 실패하면 한 건씩 다시 반영해서, 실패한 건만 골라낸다. 실패한 save 는 호출한 쪽에 예외로 알리고,
+ * 실패한 update 는 호출한 쪽이 이미 반환했으므로 getFailedUpdates 에 남겨 두고 retryFailedUpdates 로 다시 반영한다.
+ * 버전(version)이 있는 update 는 충돌을 알려야 하므로 대기열을 반영한 뒤 바로 처리한다.
+ */
+@Slf4j
+public class WriteBehindItemRepository implements ItemRepository, AutoCloseable {
+
+    private final ItemRepository target;
+    private final TransactionOperations transactionOperations;
+    private final int batchSize;
+    private final int capacity;
+    private final long flushIntervalNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushNeeded = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+
+    // lock 으로 보호한다.
+    private List<PendingSave> saves = new ArrayList<>();
+    private Map<Long, ItemUpdateDto> updates = new LinkedHashMap<>();
+    private Map<Long, ItemUpdateDto> inflightUpdates = Map.of(); // 반영 중인(아직 커밋 전) 수정
+    private final Map<Long, ItemUpdateDto> failedUpdates = new LinkedHashMap<>(); // 반영에 실패한 수정, 최대 capacity 개
+    private long flushRequested;
+    private long flushCompleted;
+    private boolean closed;
+
+    private final Thread flusher;
+
+    public WriteBehindItemRepository(ItemRepository target, TransactionOperations transactionOperations,
+                                     int batchSize, int capacity, Duration flushInterval) {
+        this.target = target;
+        this.transactionOperations = transactionOperations;
+        this.batchSize = batchSize;
+        this.capacity = capacity;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.flusher = new Thread(this::run, "item-write-behind");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    @Override
+    public Item save(Item item) {
+        PendingSave pendingSave = new PendingSave(item);
+        lock.lock();
+        try {
+            awaitCapacity(null);
+            saves.add(pendingSave);
+            flushNeeded.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            return pendingSave.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while saving item", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public List<Item> saveAll(Collection<Item> items) {
+        // 이미 묶음이므로 바로 반영한다.
+        return transactionOperations.execute(status -> target.saveAll(items));
+    }
+
+    @Override
+    public void update(Long itemId, ItemUpdateDto updateParam) {
+        if (updateParam.getVersion() != null) {
+            flush();
+            transactionOperations.executeWithoutResult(status -> target.update(itemId, updateParam));
+            return;
+        }
+        ItemUpdateDto copy = new ItemUpdateDto(updateParam.getItemName(), updateParam.getPrice(), updateParam.getQuantity());
+        lock.lock();
+        try {
+            awaitCapacity(itemId);
+            updates.put(itemId, copy);
+            if (updates.size() + saves.size() >= batchSize) {
+                flushNeeded.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        flush();
+        return transactionOperations.execute(status -> target.updateAll(updateParams));
+    }
+
+    @Override
+    public int adjustAll(ItemSearchCond cond, ItemAdjustDto adjustParam) {
+        flush();
+        return transactionOperations.execute(status -> target.adjustAll(cond, adjustParam));
+    }
+
+    @Override
+    public Optional<Item> findById(Long id) {
+        // 대기 중인 수정을 먼저 읽어야 한다. 나중에 읽으면 그 사이 반영, 제거되어 이전 값을 돌려줄 수 있다.
+        ItemUpdateDto pending = pendingUpdate(id);
+        Optional<Item> item = target.findById(id);
+        if (pending == null) {
+            return item;
+        }
+        return item.map(findItem -> {
+            Item copy = new Item(pending.getItemName(), pending.getPrice(), pending.getQuantity());
+            copy.setId(findItem.getId());
+            copy.setVersion(findItem.getVersion() != null ? findItem.getVersion() + 1 : null);
+            return copy;
+        });
+    }
+
+    @Override
+    public List<Item> findAll(ItemSearchCond cond) {
+        flushIfPending();
+        return target.findAll(cond);
+    }
+
+    @Override
+    public Optional<ItemDto> findDtoById(Long id) {
+        ItemUpdateDto pending = pendingUpdate(id);
+        Optional<ItemDto> item = target.findDtoById(id);
+        if (pending == null) {
+            return item;
+        }
+        return item.map(findItem -> new ItemDto(findItem.getId(), pending.getItemName(), pending.getPrice(), pending.getQuantity()));
+    }
+
+    @Override
+    public List<ItemDto> findAllDto(ItemSearchCond cond) {
+        flushIfPending();
+        return target.findAllDto(cond);
+    }
+
+    @Override
+    public void forEachDto(ItemSearchCond cond, Consumer<ItemDto> action) {
+        flushIfPending();
+        target.forEachDto(cond, action);
+    }
+
+    @Override
+    public ItemAggregatesDto aggregates() {
+        flushIfPending();
+        return target.aggregates();
+    }
+
+    /**
+     * 지금까지 대기열에 들어온 쓰기가 모두 반영될 때까지 기다린다.
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            long generation = ++flushRequested;
+            flushNeeded.signal();
+            while (flushCompleted < generation && flusher.isAlive()) {
+                flushed.await(100, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while flushing items", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 새 쓰기를 받지 않고, 남은 쓰기를 모두 반영한 뒤 반영 스레드를 종료한다.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        lock.lock();
+        try {
+            closed = true;
+            flushNeeded.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        flusher.join();
+    }
+
+    /**
+     * 한 건씩 다시 반영해도 실패한 수정 (id -> 값), 오래된 것부터 capacity 개까지 남긴다.
+     */
+    public Map<Long, ItemUpdateDto> getFailedUpdates() {
+        lock.lock();
+        try {
+            return new LinkedHashMap<>(failedUpdates);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 실패한 수정을 대기열에 다시 넣는다. 그 사이 같은 상품에 새 수정이 들어왔으면 새 수정을 남긴다.
+     */
+    public void retryFailedUpdates() {
+        lock.lock();
+        try {
+            failedUpdates.forEach(updates::putIfAbsent);
+            failedUpdates.clear();
+            flushNeeded.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public ItemRepository getTarget() {
+        return target;
+    }
+
+    private void flushIfPending() {
+        boolean pending;
+        lock.lock();
+        try {
+            pending = !saves.isEmpty() || !updates.isEmpty() || !inflightUpdates.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+        if (pending) {
+            flush();
+        }
+    }
+
+    private ItemUpdateDto pendingUpdate(Long id) {
+        lock.lock();
+        try {
+            ItemUpdateDto pending = updates.get(id);
+            return pending != null ? pending : inflightUpdates.get(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 대기열이 가득 차면 반영될 때까지 기다린다. (backpressure)
+     * 이미 대기 중인 id 의 수정은 합쳐지므로 자리가 필요 없다.
+     */
+    private void awaitCapacity(Long updateId) {
+        try {
+            while (!closed && saves.size() + updates.size() >= capacity
+                    && (updateId == null || !updates.containsKey(updateId))) {
+                flushNeeded.signal();
+                notFull.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for write-behind capacity", e);
+        }
+        if (closed) {
+            throw new IllegalStateException("write-behind repository is closed");
+        }
+    }
+
+    private void run() {
+        while (true) {
+            List<PendingSave> batchSaves;
+            Map<Long, ItemUpdateDto> batchUpdates;
+            long generation;
+            lock.lock();
+            try {
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                // save 는 호출한 쪽이 기다리고 있으므로 바로 반영한다.
+                while (!closed && saves.isEmpty() && updates.size() < batchSize && flushRequested == flushCompleted) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        if (!updates.isEmpty()) {
+                            break;
+                        }
+                        deadline = System.nanoTime() + flushIntervalNanos;
+                        remaining = flushIntervalNanos;
+                    }
+                    flushNeeded.awaitNanos(remaining);
+                }
+                if (closed && saves.isEmpty() && updates.isEmpty()) {
+                    flushCompleted = flushRequested;
+                    flushed.signalAll();
+                    return;
+                }
+                generation = flushRequested;
+                batchSaves = saves;
+                batchUpdates = updates;
+                saves = new ArrayList<>();
+                updates = new LinkedHashMap<>();
+                inflightUpdates = batchUpdates;
+                notFull.signalAll();
+            } catch (InterruptedException e) {
+                log.warn("write-behind flusher interrupted");
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            write(batchSaves, batchUpdates);
+
+            lock.lock();
+            try {
+                inflightUpdates = Map.of();
+                flushCompleted = Math.max(flushCompleted, generation);
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void write(List<PendingSave> batchSaves, Map<Long, ItemUpdateDto> batchUpdates) {
+        try {
+            transactionOperations.executeWithoutResult(status -> {
+                if (!batchSaves.isEmpty()) {
+                    target.saveAll(batchSaves.stream().map(pendingSave -> pendingSave.item).collect(Collectors.toList()));
+                }
+                if (!batchUpdates.isEmpty()) {
+                    target.updateAll(batchUpdates);
+                }
+            });
+        } catch (RuntimeException e) {
+            // 한 건 때문에 묶음 전체가 롤백되었을 수 있으므로, 한 건씩 다시 반영해서 실패한 건만 골라낸다.
+            log.warn("write-behind flush failed, retrying one by one: saves={}, updates={}",
+                    batchSaves.size(), batchUpdates.size(), e);
+            writeEach(batchSaves, batchUpdates);
+            return;
+        }
+        batchSaves.forEach(pendingSave -> pendingSave.future.complete(pendingSave.item));
+        forgetFailedUpdates(batchUpdates.keySet());
+    }
+
+    private void writeEach(List<PendingSave> batchSaves, Map<Long, ItemUpdateDto> batchUpdates) {
+        for (PendingSave pendingSave : batchSaves) {
+            // 롤백된 트랜잭션에서 받은 id 는 쓰이지 않았으므로 새로 받는다.
+            pendingSave.item.setId(null);
+            pendingSave.item.setVersion(null);
+            try {
+                transactionOperations.executeWithoutResult(status -> target.saveAll(List.of(pendingSave.item)));
+                pendingSave.future.complete(pendingSave.item);
+            } catch (RuntimeException e) {
+                pendingSave.future.completeExceptionally(e);
+            }
+        }
+        for (Map.Entry<Long, ItemUpdateDto> entry : batchUpdates.entrySet()) {
+            try {
+                transactionOperations.executeWithoutResult(
+                        status -> target.updateAll(Map.of(entry.getKey(), entry.getValue())));
+                forgetFailedUpdates(List.of(entry.getKey()));
+            } catch (RuntimeException e) {
+                log.error("write-behind update failed: id={}", entry.getKey(), e);
+                addFailedUpdate(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * 더 새로운 수정이 반영되었으므로, 같은 상품의 실패한 수정은 다시 반영하지 않는다.
+     */
+    private void forgetFailedUpdates(Collection<Long> itemIds) {
+        lock.lock();
+        try {
+            if (!failedUpdates.isEmpty()) {
+                failedUpdates.keySet().removeAll(itemIds);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void addFailedUpdate(Long itemId, ItemUpdateDto updateParam) {
+        lock.lock();
+        try {
+            failedUpdates.remove(itemId);
+            if (failedUpdates.size() >= capacity) {
+                Long oldest = failedUpdates.keySet().iterator().next();
+                log.error("write-behind failed updates full, dropping id={}", oldest);
+                failedUpdates.remove(oldest);
+            }
+            failedUpdates.put(itemId, updateParam);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static class PendingSave {
+        private final Item item;
+        private final CompletableFuture<Item> future = new CompletableFuture<>();
+
+        private PendingSave(Item item) {
+            this.item = item;
+        }
+    }
+}
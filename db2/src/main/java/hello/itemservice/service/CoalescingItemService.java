@@ -0,0 +1,196 @@
+package hello.itemservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAdjustDto;
+import hello.itemservice.repository.ItemAggregatesDto;
+import hello.itemservice.repository.ItemDto;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemUpdateDto;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * 같은 상품을 동시에 조회하면 한 번만 조회하는 ItemService 데코레이터 (single-flight)
+ *
+ * - findById, findDtoById 는 같은 id 로 진행 중인 조회가 있으면 새로 조회하지 않고 그 결과를 기다린다.
+ *   결과는 공유하지 않고, 기다린 요청에는 복사본을 돌려준다.
+ * - 없는 상품은 negativeTtl 동안 기억해서 저장소까지 가지 않는다. 상품을 저장하면 저장된 id 만 잊는다.
+ * - 상품을 수정하면 진행 중인 조회에서 떼어내서, 수정 후에 들어온 요청이 수정 전 결과를 받지 않게 한다.
+ */
+public class CoalescingItemService implements ItemService {
+
+    private static final int NEGATIVE_MAXIMUM_SIZE = 10_000;
+
+    private final ItemService target;
+
+    private final ConcurrentMap<Long, CompletableFuture<Optional<Item>>> itemLoads = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, CompletableFuture<Optional<ItemDto>>> itemDtoLoads = new ConcurrentHashMap<>();
+    private final Cache<Long, Boolean> missingIds;
+    private final AtomicLong saveCount = new AtomicLong(); // 저장 전에 시작한 조회가 저장 후에 없는 상품으로 기억하지 않도록
+
+    public CoalescingItemService(ItemService target, Duration negativeTtl) {
+        this.target = target;
+        this.missingIds = Caffeine.newBuilder()
+                .maximumSize(NEGATIVE_MAXIMUM_SIZE)
+                .expireAfterWrite(negativeTtl)
+                .build();
+    }
+
+    @Override
+    public Item save(Item item) {
+        Item savedItem = target.save(item);
+        forgetMissingIds(List.of(savedItem.getId()));
+        return savedItem;
+    }
+
+    @Override
+    public List<Item> saveAll(Collection<Item> items) {
+        List<Item> savedItems = target.saveAll(items);
+        forgetMissingIds(savedItems.stream().map(Item::getId).collect(Collectors.toList()));
+        return savedItems;
+    }
+
+    @Override
+    public void update(Long itemId, ItemUpdateDto updateParam) {
+        target.update(itemId, updateParam);
+        detach(itemId);
+    }
+
+    @Override
+    public int updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        int count = target.updateAll(updateParams);
+        updateParams.keySet().forEach(this::detach);
+        return count;
+    }
+
+    @Override
+    public int adjustAll(ItemSearchCond cond, ItemAdjustDto adjustParam) {
+        // 어떤 상품이 바뀌었는지 알 수 없으므로 진행 중인 조회를 모두 떼어낸다.
+        int count = target.adjustAll(cond, adjustParam);
+        itemLoads.clear();
+        itemDtoLoads.clear();
+        return count;
+    }
+
+    @Override
+    public List<Long> apply(List<ItemCommand> commands) {
+        List<Long> itemIds = target.apply(commands);
+        forgetMissingIds(itemIds);
+        for (ItemCommand command : commands) {
+            if (command.getType() == ItemCommand.Type.UPDATE) {
+                detach(command.getItemId());
+            }
+        }
+        return itemIds;
+    }
+
+    @Override
+    public Optional<Item> findById(Long id) {
+        return load(itemLoads, id, target::findById, CoalescingItemService::copy);
+    }
+
+    @Override
+    public List<Item> findItems(ItemSearchCond itemSearch) {
+        return target.findItems(itemSearch);
+    }
+
+    @Override
+    public Optional<ItemDto> findDtoById(Long id) {
+        return load(itemDtoLoads, id, target::findDtoById, CoalescingItemService::copy);
+    }
+
+    @Override
+    public List<ItemDto> findItemDtos(ItemSearchCond itemSearch) {
+        return target.findItemDtos(itemSearch);
+    }
+
+    @Override
+    public void exportItems(ItemSearchCond itemSearch, Consumer<ItemDto> action) {
+        target.exportItems(itemSearch, action);
+    }
+
+    @Override
+    public ItemAggregatesDto aggregates() {
+        return target.aggregates();
+    }
+
+    @Override
+    public long lastModified() {
+        return target.lastModified();
+    }
+
+    /**
+     * 먼저 들어온 요청이 조회하고, 그동안 들어온 요청은 같은 결과를 기다린다.
+     * 조회가 끝나면 바로 지우므로 결과를 캐시하지는 않는다. (없는 상품만 missingIds 에 남긴다)
+     */
+    private <T> Optional<T> load(ConcurrentMap<Long, CompletableFuture<Optional<T>>> loads, Long id,
+                                 Function<Long, Optional<T>> loader, UnaryOperator<T> copy) {
+        if (missingIds.getIfPresent(id) != null) {
+            return Optional.empty();
+        }
+
+        CompletableFuture<Optional<T>> load = new CompletableFuture<>();
+        CompletableFuture<Optional<T>> inflight = loads.putIfAbsent(id, load);
+        if (inflight != null) {
+            try {
+                return inflight.join().map(copy);
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        try {
+            long saves = saveCount.get();
+            Optional<T> result = loader.apply(id);
+            if (result.isEmpty()) {
+                missingIds.put(id, Boolean.TRUE);
+                if (saveCount.get() != saves) {
+                    missingIds.invalidate(id);
+                }
+            }
+            load.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(id, load);
+        }
+    }
+
+    private void forgetMissingIds(Collection<Long> itemIds) {
+        saveCount.incrementAndGet();
+        missingIds.invalidateAll(itemIds);
+    }
+
+    private void detach(Long itemId) {
+        itemLoads.remove(itemId);
+        itemDtoLoads.remove(itemId);
+        missingIds.invalidate(itemId);
+    }
+
+    private static Item copy(Item item) {
+        Item copy = new Item(item.getItemName(), item.getPrice(), item.getQuantity());
+        copy.setId(item.getId());
+        copy.setVersion(item.getVersion());
+        return copy;
+    }
+
+    private static ItemDto copy(ItemDto item) {
+        return new ItemDto(item.getId(), item.getItemName(), item.getPrice(), item.getQuantity());
+    }
+}
@@ -0,0 +1,39 @@
+package hello.itemservice.service;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemUpdateDto;
+import lombok.Data;
+
+/**
+ * ItemService.apply 로 한 번에 반영할 변경 하나, 등록(CREATE)이면 item, 수정(UPDATE)이면 itemId 와 updateParam 을 사용한다.
+ */
+@Data
+public class ItemCommand {
+
+    public enum Type {
+        CREATE, UPDATE
+    }
+
+    private Type type;
+    private Item item;
+    private Long itemId;
+    private ItemUpdateDto updateParam;
+
+    public ItemCommand() {
+    }
+
+    public static ItemCommand create(Item item) {
+        ItemCommand command = new ItemCommand();
+        command.setType(Type.CREATE);
+        command.setItem(item);
+        return command;
+    }
+
+    public static ItemCommand update(Long itemId, ItemUpdateDto updateParam) {
+        ItemCommand command = new ItemCommand();
+        command.setType(Type.UPDATE);
+        command.setItemId(itemId);
+        command.setUpdateParam(updateParam);
+        return command;
+    }
+}
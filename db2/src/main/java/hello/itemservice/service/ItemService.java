@@ -1,19 +1,56 @@
 package hello.itemservice.service;
 
 import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAdjustDto;
+import hello.itemservice.repository.ItemAggregatesDto;
+import hello.itemservice.repository.ItemDto;
 import hello.itemservice.repository.ItemSearchCond;
 import hello.itemservice.repository.ItemUpdateDto;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface ItemService {
 
     Item save(Item item);
 
+    List<Item> saveAll(Collection<Item> items);
+
     void update(Long itemId, ItemUpdateDto updateParam);
 
+    int updateAll(Map<Long, ItemUpdateDto> updateParams);
+
+    int adjustAll(ItemSearchCond cond, ItemAdjustDto adjustParam);
+
+    /**
+     * 등록, 수정을 순서대로 한 트랜잭션으로 반영한다. 하나라도 실패하면 모두 반영하지 않는다.
+     * 명령 순서대로 등록, 수정한 상품의 id 를 돌려준다.
+     */
+    List<Long> apply(List<ItemCommand> commands);
+
     Optional<Item> findById(Long id);
 
     List<Item> findItems(ItemSearchCond itemSearch);
+
+    Optional<ItemDto> findDtoById(Long id);
+
+    List<ItemDto> findItemDtos(ItemSearchCond itemSearch);
+
+    void exportItems(ItemSearchCond itemSearch, Consumer<ItemDto> action);
+
+    /**
+     * 상품 수, 재고 금액 합계, 가격 구간별 상품 수 (운영 대시보드용)
+     */
+    ItemAggregatesDto aggregates();
+
+    /**
+     * 상품이 마지막으로 변경된 시각(epoch millis), 조회 없이 목록 응답 캐시 검증(ETag)에 사용한다.
+     * 변경될 때마다 반드시 증가한다. 같은 초 안에도 여러 번 바뀌므로 초 단위인 Last-Modified 로는 쓰지 않는다.
+     * 이 JVM 의 서비스를 거친 변경만 반영하므로 단일 노드에서만 유효하다.
+     * 여러 노드로 띄우면 다른 노드의 변경을 모른 채 304 를 응답할 수 있다.
+     */
+    long lastModified();
 }
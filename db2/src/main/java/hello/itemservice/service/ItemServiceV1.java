@@ -1,29 +1,154 @@
 package hello.itemservice.service;
 
 import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAdjustDto;
+import hello.itemservice.repository.ItemAggregatesDto;
+import hello.itemservice.repository.ItemDto;
 import hello.itemservice.repository.ItemRepository;
 import hello.itemservice.repository.ItemSearchCond;
 import hello.itemservice.repository.ItemUpdateDto;
-import lombok.RequiredArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
+/**
+ * 변경은 서비스에서 트랜잭션을 시작하고, 저장소는 그 트랜잭션에 참여한다.
+ * 트랜잭션 매니저가 없는 메모리 저장소는 TransactionOperations.withoutTransaction() 을 사용한다.
+ */
 @Service
-@RequiredArgsConstructor
 public class ItemServiceV1 implements ItemService {
 
+    // 버전 없이 수정할 때, 동시 수정 충돌이 나면 최신 값을 다시 읽어 재시도하는 최대 횟수
+    private static final int MAX_UPDATE_ATTEMPTS = 10;
+    private static final long UPDATE_BACKOFF_MILLIS = 5;
+
     private final ItemRepository itemRepository;
+    private final TransactionOperations transactionOperations;
+
+    // 상품 변경 시각, 재시작하면 시작 시각부터 다시 센다. JVM 마다 따로 세므로 단일 노드에서만 유효하다.
+    private final AtomicLong lastModified = new AtomicLong(System.currentTimeMillis());
+
+    public ItemServiceV1(ItemRepository itemRepository) {
+        this(itemRepository, TransactionOperations.withoutTransaction());
+    }
+
+    public ItemServiceV1(ItemRepository itemRepository, TransactionOperations transactionOperations) {
+        this.itemRepository = itemRepository;
+        this.transactionOperations = transactionOperations;
+    }
 
     @Override
     public Item save(Item item) {
-        return itemRepository.save(item);
+        Item savedItem = transactionOperations.execute(status -> itemRepository.save(item));
+        touch();
+        return savedItem;
+    }
+
+    @Override
+    public List<Item> saveAll(Collection<Item> items) {
+        List<Item> savedItems = transactionOperations.execute(status -> itemRepository.saveAll(items));
+        touch();
+        return savedItems;
     }
 
     @Override
     public void update(Long itemId, ItemUpdateDto updateParam) {
-        itemRepository.update(itemId, updateParam);
+        // 수정 폼의 버전이 있으면 사용자가 본 값과 달라진 것이므로 재시도하지 않고 그대로 알린다.
+        if (updateParam.getVersion() != null) {
+            transactionOperations.executeWithoutResult(status -> itemRepository.update(itemId, updateParam));
+            touch();
+            return;
+        }
+        // 충돌은 커밋 시점에 발생하므로, 시도마다 새 트랜잭션으로 반영한다.
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionOperations.executeWithoutResult(status -> itemRepository.update(itemId, updateParam));
+                touch();
+                return;
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= MAX_UPDATE_ATTEMPTS) {
+                    throw e;
+                }
+                backoff(attempt);
+            }
+        }
+    }
+
+    @Override
+    public long lastModified() {
+        return lastModified.get();
+    }
+
+    /**
+     * 변경이 반영된(커밋된) 뒤에 호출한다.
+     * 같은 밀리초 안에 여러 번 변경되어도 값이 달라지도록 최소 1씩 증가시킨다.
+     */
+    private void touch() {
+        long now = System.currentTimeMillis();
+        lastModified.accumulateAndGet(now, (prev, time) -> Math.max(prev + 1, time));
+    }
+
+    private static void backoff(int attempt) {
+        try {
+            // 같은 상품을 동시에 수정하는 요청들이 다시 부딪히지 않도록, 대기 시간을 늘려가며 무작위로 어긋나게 기다린다.
+            long bound = UPDATE_BACKOFF_MILLIS << Math.min(attempt, 8);
+            Thread.sleep(ThreadLocalRandom.current().nextLong(bound) + 1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public int updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        int count = transactionOperations.execute(status -> itemRepository.updateAll(updateParams));
+        touch();
+        return count;
+    }
+
+    @Override
+    public int adjustAll(ItemSearchCond cond, ItemAdjustDto adjustParam) {
+        int count = transactionOperations.execute(status -> itemRepository.adjustAll(cond, adjustParam));
+        touch();
+        return count;
+    }
+
+    /**
+     * JPA 에서는 등록(persist)과 수정(변경 감지)을 커밋할 때 한 번에 flush 하고,
+     * hibernate.order_inserts, order_updates 로 같은 문장끼리 정렬해서 JDBC 배치로 보낸다.
+     * 커밋 시점의 충돌은 어느 명령 때문인지 알 수 없으므로 update 와 달리 재시도하지 않는다.
+     * 트랜잭션이 없는 메모리 저장소, write-behind 에서는 순서대로 반영할 뿐 실패해도 앞의 명령을 되돌리지 않는다.
+     */
+    @Override
+    public List<Long> apply(List<ItemCommand> commands) {
+        List<Long> itemIds = transactionOperations.execute(status -> {
+            List<Long> ids = new ArrayList<>(commands.size());
+            for (ItemCommand command : commands) {
+                switch (command.getType()) {
+                    case CREATE:
+                        ids.add(itemRepository.save(command.getItem()).getId());
+                        break;
+                    case UPDATE:
+                        itemRepository.update(command.getItemId(), command.getUpdateParam());
+                        ids.add(command.getItemId());
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown command type: " + command.getType());
+                }
+            }
+            return ids;
+        });
+        touch();
+        return itemIds;
     }
 
     @Override
@@ -35,4 +160,24 @@ public class ItemServiceV1 implements ItemService {
     public List<Item> findItems(ItemSearchCond cond) {
         return itemRepository.findAll(cond);
     }
+
+    @Override
+    public Optional<ItemDto> findDtoById(Long id) {
+        return itemRepository.findDtoById(id);
+    }
+
+    @Override
+    public List<ItemDto> findItemDtos(ItemSearchCond cond) {
+        return itemRepository.findAllDto(cond);
+    }
+
+    @Override
+    public void exportItems(ItemSearchCond cond, Consumer<ItemDto> action) {
+        itemRepository.forEachDto(cond, action);
+    }
+
+    @Override
+    public ItemAggregatesDto aggregates() {
+        return itemRepository.aggregates();
+    }
 }
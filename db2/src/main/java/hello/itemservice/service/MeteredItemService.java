@@ -0,0 +1,124 @@
+package hello.itemservice.service;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAdjustDto;
+import hello.itemservice.repository.ItemAggregatesDto;
+import hello.itemservice.repository.ItemDto;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemUpdateDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * 서비스 연산별 지연 시간(item.service, 히스토그램 포함)을 기록하는 ItemService 데코레이터
+ */
+public class MeteredItemService implements ItemService {
+
+    private final ItemService target;
+
+    private final Timer saveTimer;
+    private final Timer saveAllTimer;
+    private final Timer updateTimer;
+    private final Timer updateAllTimer;
+    private final Timer adjustAllTimer;
+    private final Timer applyTimer;
+    private final Timer findByIdTimer;
+    private final Timer findItemsTimer;
+    private final Timer findDtoByIdTimer;
+    private final Timer findItemDtosTimer;
+    private final Timer exportItemsTimer;
+    private final Timer aggregatesTimer;
+
+    public MeteredItemService(ItemService target, MeterRegistry registry) {
+        this.target = target;
+        this.saveTimer = timer(registry, "save");
+        this.saveAllTimer = timer(registry, "saveAll");
+        this.updateTimer = timer(registry, "update");
+        this.updateAllTimer = timer(registry, "updateAll");
+        this.adjustAllTimer = timer(registry, "adjustAll");
+        this.applyTimer = timer(registry, "apply");
+        this.findByIdTimer = timer(registry, "findById");
+        this.findItemsTimer = timer(registry, "findItems");
+        this.findDtoByIdTimer = timer(registry, "findDtoById");
+        this.findItemDtosTimer = timer(registry, "findItemDtos");
+        this.exportItemsTimer = timer(registry, "exportItems");
+        this.aggregatesTimer = timer(registry, "aggregates");
+    }
+
+    @Override
+    public Item save(Item item) {
+        return saveTimer.record(() -> target.save(item));
+    }
+
+    @Override
+    public List<Item> saveAll(Collection<Item> items) {
+        return saveAllTimer.record(() -> target.saveAll(items));
+    }
+
+    @Override
+    public void update(Long itemId, ItemUpdateDto updateParam) {
+        updateTimer.record(() -> target.update(itemId, updateParam));
+    }
+
+    @Override
+    public int updateAll(Map<Long, ItemUpdateDto> updateParams) {
+        return updateAllTimer.record(() -> target.updateAll(updateParams));
+    }
+
+    @Override
+    public int adjustAll(ItemSearchCond cond, ItemAdjustDto adjustParam) {
+        return adjustAllTimer.record(() -> target.adjustAll(cond, adjustParam));
+    }
+
+    @Override
+    public List<Long> apply(List<ItemCommand> commands) {
+        return applyTimer.record(() -> target.apply(commands));
+    }
+
+    @Override
+    public Optional<Item> findById(Long id) {
+        return findByIdTimer.record(() -> target.findById(id));
+    }
+
+    @Override
+    public List<Item> findItems(ItemSearchCond itemSearch) {
+        return findItemsTimer.record(() -> target.findItems(itemSearch));
+    }
+
+    @Override
+    public Optional<ItemDto> findDtoById(Long id) {
+        return findDtoByIdTimer.record(() -> target.findDtoById(id));
+    }
+
+    @Override
+    public List<ItemDto> findItemDtos(ItemSearchCond itemSearch) {
+        return findItemDtosTimer.record(() -> target.findItemDtos(itemSearch));
+    }
+
+    @Override
+    public void exportItems(ItemSearchCond itemSearch, Consumer<ItemDto> action) {
+        exportItemsTimer.record(() -> target.exportItems(itemSearch, action));
+    }
+
+    @Override
+    public ItemAggregatesDto aggregates() {
+        return aggregatesTimer.record(target::aggregates);
+    }
+
+    @Override
+    public long lastModified() {
+        return target.lastModified();
+    }
+
+    private static Timer timer(MeterRegistry registry, String method) {
+        return Timer.builder("item.service")
+                .tag("method", method)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
@@ -1,13 +1,18 @@
 package hello.itemservice.web;
 
 import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemDto;
 import hello.itemservice.repository.ItemSearchCond;
 import hello.itemservice.repository.ItemUpdateDto;
 import hello.itemservice.service.ItemService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.util.List;
@@ -17,18 +22,49 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ItemController {
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final ItemService itemService;
 
     @GetMapping
-    public String items(@ModelAttribute("itemSearch") ItemSearchCond itemSearch, Model model) {
-        List<Item> items = itemService.findItems(itemSearch);
+    public String items(@ModelAttribute("itemSearch") ItemSearchCond itemSearch, Model model, WebRequest request) {
+        // 변경이 없으면 조회, 렌더링 없이 304 를 응답한다.
+        if (request.checkNotModified(Long.toHexString(itemService.lastModified()))) {
+            return null;
+        }
+
+        // 목록은 한 페이지씩만 조회한다.
+        if (itemSearch.getSize() == null || itemSearch.getSize() <= 0) {
+            itemSearch.setSize(DEFAULT_PAGE_SIZE);
+        }
+        itemSearch.setSize(Math.min(itemSearch.getSize(), MAX_PAGE_SIZE));
+
+        List<ItemDto> items = itemService.findItemDtos(itemSearch);
         model.addAttribute("items", items);
+
+        // 현재 페이지의 처음, 마지막 id 가 이전, 다음 페이지의 커서가 된다.
+        if (!items.isEmpty()) {
+            boolean fullPage = items.size() == itemSearch.getSize();
+            boolean hasPrev = itemSearch.getAfterId() != null || (itemSearch.getBeforeId() != null && fullPage);
+            boolean hasNext = itemSearch.getBeforeId() != null || fullPage;
+            model.addAttribute("prevId", hasPrev ? items.get(0).getId() : null);
+            model.addAttribute("nextId", hasNext ? items.get(items.size() - 1).getId() : null);
+        }
         return "items";
     }
 
+    /**
+     * 상품의 저장된 버전으로 ETag 를 만든다. 버전은 저장소에 있으므로 어느 노드에서 수정해도 달라진다.
+     * 버전을 알려면 상품 하나를 조회해야 하지만, 변경이 없으면 렌더링 없이 304 를 응답한다.
+     */
     @GetMapping("/{itemId}")
-    public String item(@PathVariable long itemId, Model model) {
-        Item item = itemService.findById(itemId).get();
+    public String item(@PathVariable long itemId, Model model, WebRequest request) {
+        Item item = itemService.findById(itemId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        if (request.checkNotModified(item.getId() + "-" + item.getVersion())) {
+            return null;
+        }
         model.addAttribute("item", item);
         return "item";
     }
@@ -48,14 +84,22 @@ public class ItemController {
 
     @GetMapping("/{itemId}/edit")
     public String editForm(@PathVariable Long itemId, Model model) {
-        Item item = itemService.findById(itemId).get();
+        Item item = itemService.findById(itemId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
         model.addAttribute("item", item);
         return "editForm";
     }
 
     @PostMapping("/{itemId}/edit")
-    public String edit(@PathVariable Long itemId, @ModelAttribute ItemUpdateDto updateParam) {
-        itemService.update(itemId, updateParam);
+    public String edit(@PathVariable Long itemId, @ModelAttribute ItemUpdateDto updateParam,
+                       RedirectAttributes redirectAttributes) {
+        try {
+            itemService.update(itemId, updateParam);
+        } catch (OptimisticLockingFailureException e) {
+            // 폼을 연 뒤에 다른 사용자가 먼저 수정했다. 최신 값으로 수정 폼을 다시 보여준다.
+            redirectAttributes.addAttribute("conflict", true);
+            return "redirect:/items/{itemId}/edit";
+        }
         return "redirect:/items/{itemId}";
     }
 
@@ -0,0 +1,80 @@
+package hello.itemservice.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hello.itemservice.repository.ItemDto;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.service.ItemService;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import javax.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+/**
+ * 상품 목록 내보내기
+ * 조회한 상품을 목록으로 모으지 않고 한 건씩 응답에 바로 쓰므로, 상품 수와 관계없이 메모리 사용량이 일정하다.
+ */
+@Controller
+@RequestMapping("/items")
+@RequiredArgsConstructor
+public class ItemExportController {
+
+    private final ItemService itemService;
+    private final ObjectMapper objectMapper;
+
+    @GetMapping("/export")
+    public void export(@ModelAttribute("itemSearch") ItemSearchCond itemSearch,
+                       @RequestParam(defaultValue = "csv") String format,
+                       HttpServletResponse response) throws IOException {
+        boolean ndjson = "ndjson".equals(format);
+
+        // 내보내기는 항상 앞에서부터(afterId 다음부터) 끝까지 쓴다.
+        itemSearch.setBeforeId(null);
+
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setContentType(ndjson ? "application/x-ndjson" : "text/csv");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"items." + (ndjson ? "ndjson" : "csv") + "\"");
+
+        Writer writer = response.getWriter();
+        if (!ndjson) {
+            writer.write("id,itemName,price,quantity\n");
+        }
+        try {
+            itemService.exportItems(itemSearch, item -> {
+                try {
+                    writer.write(ndjson ? objectMapper.writeValueAsString(item) : toCsv(item));
+                    writer.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    private static String toCsv(ItemDto item) {
+        return item.getId() + "," + csvValue(item.getItemName()) + ","
+                + csvValue(item.getPrice()) + "," + csvValue(item.getQuantity());
+    }
+
+    private static String csvValue(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.contains(",") || text.contains("\"") || text.contains("\n") || text.contains("\r")) {
+            return "\"" + text.replace("\"", "\"\"") + "\"";
+        }
+        return text;
+    }
+}
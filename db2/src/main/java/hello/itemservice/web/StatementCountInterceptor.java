@@ -0,0 +1,43 @@
+package hello.itemservice.web;
+
+import hello.itemservice.repository.jpa.StatementCounter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * 요청마다 실행된 SQL 문 수를 item.request.statements 로 기록한다.
+ * URI 패턴은 몇 개뿐이므로 패턴마다 한 번만 등록하고, 요청마다 레지스트리를 찾지 않는다.
+ */
+@RequiredArgsConstructor
+public class StatementCountInterceptor implements HandlerInterceptor {
+
+    private final MeterRegistry registry;
+    private final ConcurrentMap<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        StatementCounter.reset();
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        summaries.computeIfAbsent(uri != null ? uri.toString() : "UNKNOWN", this::summary)
+                .record(StatementCounter.get());
+    }
+
+    private DistributionSummary summary(String uri) {
+        return DistributionSummary.builder("item.request.statements")
+                .tag("uri", uri)
+                .baseUnit("statements")
+                .register(registry);
+    }
+}
@@ -0,0 +1,27 @@
+package hello.itemservice;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.service.ItemService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("local")
+class TestDataInitTest {
+
+    @Autowired
+    ItemService itemService;
+
+    @Test
+    void initData() {
+        //when local 프로필로 시작하면
+        //then 트랜잭션 안에서 초기 데이터가 저장된다.
+        assertThat(itemService.findItems(new ItemSearchCond("item", null)))
+                .extracting(Item::getItemName).containsExactly("itemA", "itemB");
+    }
+}
@@ -0,0 +1,51 @@
+package hello.itemservice.config;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadWriteRoutingDataSourceTest {
+
+    @Test
+    void routeByReadOnly() {
+        //given
+        DataSource dataSource = routingDataSource(h2("jdbc:h2:mem:primary"), h2("jdbc:h2:mem:replica"));
+
+        //when, then
+        assertThat(databaseName(dataSource, false)).isEqualTo("PRIMARY");
+        assertThat(databaseName(dataSource, true)).isEqualTo("REPLICA");
+    }
+
+    @Test
+    void fallbackToPrimary() {
+        //given 접속할 수 없는 replica
+        DataSource dataSource = routingDataSource(h2("jdbc:h2:mem:primary"), h2("jdbc:h2:tcp://localhost:1/replica"));
+
+        //when, then 읽기 전용 트랜잭션도 primary 로 처리한다.
+        assertThat(databaseName(dataSource, true)).isEqualTo("PRIMARY");
+        assertThat(databaseName(dataSource, true)).isEqualTo("PRIMARY");
+    }
+
+    private DataSource routingDataSource(DataSource primary, DataSource replica) {
+        return new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(primary, replica, 60_000));
+    }
+
+    private String databaseName(DataSource dataSource, boolean readOnly) {
+        TransactionTemplate template = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        template.setReadOnly(readOnly);
+        return template.execute(status -> new JdbcTemplate(dataSource).queryForObject("select database()", String.class));
+    }
+
+    private static DataSource h2(String url) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL(url + ";DB_CLOSE_DELAY=-1");
+        return dataSource;
+    }
+}
@@ -0,0 +1,80 @@
+package hello.itemservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.service.ItemService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * H2 두 개를 primary, replica 로 사용한다.
+ * 복제는 없으므로, replica 에는 테스트가 직접 다른 데이터를 넣어서 어느 쪽에서 읽었는지 구분한다.
+ */
+@SpringBootTest(properties = {
+        "item.datasource.replica.url=jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1",
+        "spring.datasource.hikari.maximum-pool-size=7"
+})
+@DirtiesContext
+class ReplicaDataSourceTest {
+
+    @Autowired
+    ItemRepository itemRepository;
+
+    @Autowired
+    ItemService itemService;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    DataSource replicaDataSource;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    HikariDataSource primaryDataSource;
+
+    JdbcTemplate replica;
+
+    @BeforeEach
+    void beforeEach() {
+        replica = new JdbcTemplate(replicaDataSource);
+        replica.execute("create table item (id bigint primary key, item_name varchar(10), price integer, quantity integer, version bigint)");
+        replica.update("insert into item values (1000, 'replica', 10000, 10, 0)");
+    }
+
+    @AfterEach
+    void afterEach() {
+        replica.execute("drop table item");
+    }
+
+    @Test
+    void readFromReplica() {
+        //given 쓰기(서비스 트랜잭션)는 primary 로 간다.
+        Item savedItem = itemService.save(new Item("primary", 20000, 20));
+
+        //when 읽기 전용 트랜잭션은 replica 로 간다.
+        List<Item> items = itemRepository.findAll(new ItemSearchCond());
+
+        //then
+        assertThat(items).extracting(Item::getItemName).containsExactly("replica");
+        assertThat(itemRepository.findDtoById(savedItem.getId())).isEmpty();
+    }
+
+    @Test
+    void primaryPoolSettings() {
+        //then 직접 만든 primary 풀에도 spring.datasource.hikari.* 가 적용된다.
+        assertThat(primaryDataSource.getMaximumPoolSize()).isEqualTo(7);
+        assertThat(primaryDataSource.getPoolName()).isEqualTo("primary");
+    }
+}
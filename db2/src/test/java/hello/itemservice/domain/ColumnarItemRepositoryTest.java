@@ -0,0 +1,48 @@
+package hello.itemservice.domain;
+
+import hello.itemservice.config.ColumnarConfig;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemUpdateDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * ColumnarItemRepository 로 ItemRepositoryTest 를 그대로 실행한다.
+ */
+@SpringBootTest(classes = ColumnarItemRepositoryTest.ColumnarBackend.class)
+class ColumnarItemRepositoryTest extends ItemRepositoryTest {
+
+    @Test
+    void nameTooLong() {
+        //given
+        Item itemA = itemRepository.save(new Item("itemA", 10000, 10));
+        String longName = "a".repeat(Short.MAX_VALUE + 1);
+
+        //when
+        assertThatThrownBy(() -> itemRepository.save(new Item(longName, 20000, 20)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> itemRepository.update(itemA.getId(), new ItemUpdateDto(longName, 30000, 30)))
+                .isInstanceOf(IllegalArgumentException.class);
+        Item itemB = itemRepository.save(new Item("itemB", 20000, 20));
+
+        //then 실패한 저장은 행을 남기지 않고, 실패한 수정은 값을 바꾸지 않는다.
+        assertThat(itemB.getId()).isEqualTo(itemA.getId() + 1);
+        assertThat(itemRepository.findAll(new ItemSearchCond())).containsExactly(itemA, itemB);
+        Item findItem = itemRepository.findById(itemA.getId()).get();
+        assertThat(findItem.getItemName()).isEqualTo("itemA");
+        assertThat(findItem.getPrice()).isEqualTo(10000);
+        assertThat(findItem.getVersion()).isEqualTo(0L);
+    }
+
+    @Configuration
+    @EnableAutoConfiguration
+    @Import(ColumnarConfig.class)
+    static class ColumnarBackend {
+    }
+}
@@ -0,0 +1,10 @@
+package hello.itemservice.domain;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * 캐시를 켠 상태(CachingItemRepository)로 ItemRepositoryTest 를 그대로 실행한다.
+ */
+@SpringBootTest(properties = "item.cache.enabled=true")
+class ItemRepositoryCacheTest extends ItemRepositoryTest {
+}
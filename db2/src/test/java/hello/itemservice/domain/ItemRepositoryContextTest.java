@@ -0,0 +1,32 @@
+package hello.itemservice.domain;
+
+import hello.itemservice.ItemServiceApplication;
+import hello.itemservice.repository.jpa.JpaItemRepository;
+import hello.itemservice.repository.memory.ColumnarItemRepository;
+import hello.itemservice.repository.memory.ShardedItemRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 이 패키지의 @SpringBootTest 는 ItemServiceApplication 설정으로 실행되어야 한다.
+ * 다른 저장소로 실행하는 테스트(ColumnarItemRepositoryTest ...)가 안쪽 설정 클래스에 @SpringBootConfiguration 을 붙이면,
+ * 설정 검색이 그 클래스를 먼저 찾아서 ItemRepositoryTest 도 그 저장소로 실행된다. 그러면 여기서 실패한다.
+ */
+@SpringBootTest
+class ItemRepositoryContextTest {
+
+    @Autowired
+    ApplicationContext context;
+
+    @Test
+    void applicationConfiguration() {
+        assertThat(context.getBeanNamesForType(ItemServiceApplication.class)).hasSize(1);
+        assertThat(context.getBeanNamesForType(JpaItemRepository.class)).hasSize(1);
+        assertThat(context.getBeanNamesForType(ColumnarItemRepository.class)).isEmpty();
+        assertThat(context.getBeanNamesForType(ShardedItemRepository.class)).isEmpty();
+    }
+}
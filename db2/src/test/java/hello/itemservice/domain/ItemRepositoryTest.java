@@ -1,18 +1,33 @@
 package hello.itemservice.domain;
 
+import hello.itemservice.repository.ItemAdjustDto;
+import hello.itemservice.repository.ItemAggregatesDto;
+import hello.itemservice.repository.ItemDto;
 import hello.itemservice.repository.ItemRepository;
 import hello.itemservice.repository.ItemSearchCond;
 import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.repository.cache.CachingItemRepository;
+import hello.itemservice.repository.event.PublishingItemRepository;
+import hello.itemservice.repository.memory.ColumnarItemRepository;
 import hello.itemservice.repository.memory.MemoryItemRepository;
+import hello.itemservice.repository.memory.ShardedItemRepository;
+import hello.itemservice.repository.metrics.MeteredItemRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+@Transactional // 테스트가 끝나면 롤백해서, 테스트끼리 데이터가 섞이지 않게 한다.
 @SpringBootTest
 class ItemRepositoryTest {
 
@@ -22,8 +37,21 @@ class ItemRepositoryTest {
     @AfterEach
     void afterEach() {
         //MemoryItemRepository 의 경우 제한적으로 사용
-        if (itemRepository instanceof MemoryItemRepository) {
-            ((MemoryItemRepository) itemRepository).clearStore();
+        ItemRepository target = itemRepository;
+        while (target instanceof CachingItemRepository || target instanceof MeteredItemRepository
+                || target instanceof PublishingItemRepository) {
+            target = target instanceof CachingItemRepository ? ((CachingItemRepository) target).getTarget()
+                    : target instanceof MeteredItemRepository ? ((MeteredItemRepository) target).getTarget()
+                    : ((PublishingItemRepository) target).getTarget();
+        }
+        if (target instanceof MemoryItemRepository) {
+            ((MemoryItemRepository) target).clearStore();
+        }
+        if (target instanceof ColumnarItemRepository) {
+            ((ColumnarItemRepository) target).clearStore();
+        }
+        if (target instanceof ShardedItemRepository) {
+            ((ShardedItemRepository) target).clearStore();
         }
     }
 
@@ -40,6 +68,23 @@ class ItemRepositoryTest {
         assertThat(findItem).isEqualTo(savedItem);
     }
 
+    @Test
+    void saveAll() {
+        //given 배치 크기보다 많은 상품
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            items.add(new Item("bulk-" + i, 10000, 10));
+        }
+
+        //when
+        List<Item> savedItems = itemRepository.saveAll(items);
+
+        //then
+        assertThat(savedItems).extracting(Item::getId).doesNotContainNull().doesNotHaveDuplicates();
+        List<Item> result = itemRepository.findAll(new ItemSearchCond("bulk", null));
+        assertThat(result).hasSize(120);
+    }
+
     @Test
     void updateItem() {
         //given
@@ -58,6 +103,111 @@ class ItemRepositoryTest {
         assertThat(findItem.getQuantity()).isEqualTo(updateParam.getQuantity());
     }
 
+    @Test
+    void updateAll() {
+        //given
+        Item item1 = itemRepository.save(new Item("item1", 10000, 10));
+        Item item2 = itemRepository.save(new Item("item2", 20000, 20));
+
+        //when
+        Map<Long, ItemUpdateDto> updateParams = new HashMap<>();
+        updateParams.put(item1.getId(), new ItemUpdateDto("item1-1", 11000, 11));
+        updateParams.put(item2.getId(), new ItemUpdateDto("item2-1", 21000, 21));
+        int count = itemRepository.updateAll(updateParams);
+
+        //then
+        assertThat(count).isEqualTo(2);
+        for (Map.Entry<Long, ItemUpdateDto> entry : updateParams.entrySet()) {
+            Item findItem = itemRepository.findById(entry.getKey()).get();
+            assertThat(findItem.getItemName()).isEqualTo(entry.getValue().getItemName());
+            assertThat(findItem.getPrice()).isEqualTo(entry.getValue().getPrice());
+            assertThat(findItem.getQuantity()).isEqualTo(entry.getValue().getQuantity());
+        }
+    }
+
+    @Test
+    void updateAllWithVersion() {
+        //given
+        Item item1 = itemRepository.save(new Item("item1", 10000, 10));
+        Item item2 = itemRepository.save(new Item("item2", 20000, 20));
+        ItemUpdateDto updateParam = new ItemUpdateDto("item1-1", 11000, 11);
+        updateParam.setVersion(item1.getVersion());
+
+        //when 조회했던 버전으로 수정하면 반영된다.
+        int count = itemRepository.updateAll(Map.of(item1.getId(), updateParam));
+
+        //then 같은 버전으로 다시 수정하면 먼저 수정된 것이므로 충돌이다.
+        assertThat(count).isEqualTo(1);
+        assertThat(itemRepository.findById(item1.getId()).get().getVersion()).isEqualTo(item1.getVersion() + 1);
+        Map<Long, ItemUpdateDto> staleParams = new HashMap<>();
+        staleParams.put(item2.getId(), new ItemUpdateDto("item2-1", 21000, 21));
+        staleParams.put(item1.getId(), updateParam);
+        assertThatThrownBy(() -> itemRepository.updateAll(staleParams))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+    }
+
+    @Test
+    void adjustAll() {
+        //given
+        Item item1 = itemRepository.save(new Item("adjust-1", 10000, 10));
+        Item item2 = itemRepository.save(new Item("adjust-2", 20000, 20));
+        Item item3 = itemRepository.save(new Item("adjust-3", 30000, 30));
+
+        //when 20000원 이하 상품 10% 인하, 수량 5개 추가
+        int count = itemRepository.adjustAll(new ItemSearchCond("adjust", 20000), new ItemAdjustDto(-10, 5));
+
+        //then
+        assertThat(count).isEqualTo(2);
+        assertThat(itemRepository.findById(item1.getId()).get())
+                .extracting(Item::getPrice, Item::getQuantity).containsExactly(9000, 15);
+        assertThat(itemRepository.findById(item2.getId()).get())
+                .extracting(Item::getPrice, Item::getQuantity).containsExactly(18000, 25);
+        assertThat(itemRepository.findById(item3.getId()).get())
+                .extracting(Item::getPrice, Item::getQuantity).containsExactly(30000, 30);
+    }
+
+    @Test
+    void adjustAllIgnoresPage() {
+        //given
+        Item item1 = itemRepository.save(new Item("adjust-1", 10000, 10));
+        Item item2 = itemRepository.save(new Item("adjust-2", 20000, 20));
+        Item item3 = itemRepository.save(new Item("adjust-3", 30000, 30));
+
+        //when 페이지 조건이 남아있는 검색 조건으로 조정해도
+        ItemSearchCond cond = new ItemSearchCond("adjust", null);
+        cond.setAfterId(item1.getId());
+        cond.setBeforeId(item3.getId());
+        cond.setSize(1);
+        int count = itemRepository.adjustAll(cond, new ItemAdjustDto(null, 1));
+
+        //then 검색 조건에 맞는 상품 전체를 조정한다.
+        assertThat(count).isEqualTo(3);
+        assertThat(itemRepository.findAll(new ItemSearchCond("adjust", null)))
+                .extracting(Item::getQuantity).containsExactly(11, 21, 31);
+    }
+
+    @Test
+    void aggregates() {
+        //given
+        long itemCount = itemRepository.aggregates().getItemCount();
+        Item item1 = itemRepository.save(new Item("agg-1", 500, 10));
+        itemRepository.save(new Item("agg-2", 20000, 3));
+        itemRepository.save(new Item("agg-3", null, 7));
+
+        //when 수정, 일괄 조정 후에도
+        itemRepository.update(item1.getId(), new ItemUpdateDto("agg-1", 150000, 2));
+        itemRepository.adjustAll(new ItemSearchCond("agg", null), new ItemAdjustDto(-10, 1));
+
+        //then 전체를 다시 계산한 값과 같다.
+        ItemAggregatesDto expected = new ItemAggregatesDto();
+        for (Item item : itemRepository.findAll(new ItemSearchCond())) {
+            expected.add(item.getPrice(), item.getQuantity());
+        }
+        ItemAggregatesDto aggregates = itemRepository.aggregates();
+        assertThat(aggregates).isEqualTo(expected);
+        assertThat(aggregates.getItemCount()).isEqualTo(itemCount + 3);
+    }
+
     @Test
     void findItems() {
         //given
@@ -85,6 +235,88 @@ class ItemRepositoryTest {
         test("itemA", 10000, item1);
     }
 
+    @Test
+    void findItemsPage() {
+        //given
+        Item item1 = itemRepository.save(new Item("page-1", 10000, 10));
+        Item item2 = itemRepository.save(new Item("page-2", 20000, 20));
+        Item item3 = itemRepository.save(new Item("page-3", 30000, 30));
+
+        //첫 페이지
+        testPage(null, null, item1, item2);
+
+        //다음 페이지
+        testPage(item2.getId(), null, item3);
+
+        //이전 페이지
+        testPage(null, item3.getId(), item1, item2);
+        testPage(null, item2.getId(), item1);
+    }
+
+    void testPage(Long afterId, Long beforeId, Item... items) {
+        ItemSearchCond cond = new ItemSearchCond("page", null);
+        cond.setAfterId(afterId);
+        cond.setBeforeId(beforeId);
+        cond.setSize(2);
+        List<Item> result = itemRepository.findAll(cond);
+        assertThat(result).containsExactly(items);
+    }
+
+    @Test
+    void findItemsAfterPriceChange() {
+        //given 가격 구간이 바뀌도록 수정한 상품
+        Item item1 = itemRepository.save(new Item("bucket-1", 3000, 10));
+        Item item2 = itemRepository.save(new Item("bucket-2", 4000, 20));
+        Item item3 = itemRepository.save(new Item("bucket-3", 4500, 30));
+        itemRepository.update(item1.getId(), new ItemUpdateDto("bucket-1", 100, 10));
+
+        //when
+        ItemSearchCond cond = new ItemSearchCond("bucket", 5000);
+        cond.setSize(2);
+        List<Item> page = itemRepository.findAll(cond);
+        List<ItemDto> dtos = itemRepository.findAllDto(new ItemSearchCond(null, 5000));
+        List<ItemDto> exported = new ArrayList<>();
+        itemRepository.forEachDto(new ItemSearchCond(null, 5000), exported::add);
+
+        //then 한 번씩만 찾는다.
+        assertThat(page).extracting(Item::getId).containsExactly(item1.getId(), item2.getId());
+        assertThat(dtos).extracting(ItemDto::getId).containsExactly(item1.getId(), item2.getId(), item3.getId());
+        assertThat(exported).extracting(ItemDto::getId).containsExactly(item1.getId(), item2.getId(), item3.getId());
+    }
+
+    @Test
+    void findDto() {
+        //given
+        Item item1 = itemRepository.save(new Item("dto-1", 10000, 10));
+        Item item2 = itemRepository.save(new Item("dto-2", 20000, 20));
+
+        //when
+        ItemDto findItem = itemRepository.findDtoById(item1.getId()).get();
+        List<ItemDto> result = itemRepository.findAllDto(new ItemSearchCond("dto", 10000));
+
+        //then
+        assertThat(findItem).isEqualTo(new ItemDto(item1.getId(), "dto-1", 10000, 10));
+        assertThat(result).containsExactly(new ItemDto(item1.getId(), "dto-1", 10000, 10));
+        assertThat(itemRepository.findDtoById(item2.getId() + 1000)).isEmpty();
+    }
+
+    @Test
+    void forEachDto() {
+        //given
+        Item item1 = itemRepository.save(new Item("export-1", 10000, 10));
+        Item item2 = itemRepository.save(new Item("export-2", 20000, 20));
+        itemRepository.save(new Item("export-3", 30000, 30));
+
+        //when
+        List<ItemDto> result = new ArrayList<>();
+        itemRepository.forEachDto(new ItemSearchCond("export", 20000), result::add);
+
+        //then
+        assertThat(result).containsExactly(
+                new ItemDto(item1.getId(), "export-1", 10000, 10),
+                new ItemDto(item2.getId(), "export-2", 20000, 20));
+    }
+
     void test(String itemName, Integer maxPrice, Item... items) {
         List<Item> result = itemRepository.findAll(new ItemSearchCond(itemName, maxPrice));
         assertThat(result).containsExactly(items);
@@ -0,0 +1,23 @@
+package hello.itemservice.domain;
+
+import hello.itemservice.config.JdbcTemplateConfig;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+/**
+ * JdbcTemplateItemRepository 로 ItemRepositoryTest 를 그대로 실행한다.
+ * 테이블은 JPA(ddl-auto)가 Item 엔티티로 만든다.
+ */
+@SpringBootTest(classes = JdbcTemplateItemRepositoryTest.JdbcTemplateBackend.class)
+class JdbcTemplateItemRepositoryTest extends ItemRepositoryTest {
+
+    @Configuration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = Item.class)
+    @Import(JdbcTemplateConfig.class)
+    static class JdbcTemplateBackend {
+    }
+}
@@ -0,0 +1,20 @@
+package hello.itemservice.domain;
+
+import hello.itemservice.config.MemoryConfig;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+/**
+ * MemoryItemRepository 로 ItemRepositoryTest 를 그대로 실행한다.
+ */
+@SpringBootTest(classes = MemoryItemRepositoryBackendTest.MemoryBackend.class)
+class MemoryItemRepositoryBackendTest extends ItemRepositoryTest {
+
+    @Configuration
+    @EnableAutoConfiguration
+    @Import(MemoryConfig.class)
+    static class MemoryBackend {
+    }
+}
@@ -0,0 +1,22 @@
+package hello.itemservice.domain;
+
+import hello.itemservice.config.ShardedConfig;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+/**
+ * ShardedItemRepository 로 ItemRepositoryTest 를 그대로 실행한다.
+ * 상품이 적어도 샤드별 병렬 검색과 병합을 거치도록 parallel-threshold 를 0 으로 둔다.
+ */
+@SpringBootTest(classes = ShardedItemRepositoryTest.ShardedBackend.class,
+        properties = {"item.shard.count=4", "item.shard.parallel-threshold=0"})
+class ShardedItemRepositoryTest extends ItemRepositoryTest {
+
+    @Configuration
+    @EnableAutoConfiguration
+    @Import(ShardedConfig.class)
+    static class ShardedBackend {
+    }
+}
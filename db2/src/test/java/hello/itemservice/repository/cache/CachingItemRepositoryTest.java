@@ -0,0 +1,152 @@
+package hello.itemservice.repository.cache;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.repository.memory.MemoryItemRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingItemRepositoryTest {
+
+    MemoryItemRepository target = new MemoryItemRepository();
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    CachingItemRepository itemRepository = new CachingItemRepository(target, 100, Duration.ofMinutes(10), 1_000,
+            registry);
+
+    @AfterEach
+    void afterEach() {
+        target.clearStore();
+    }
+
+    @Test
+    void findDtoByIdCopy() {
+        //given
+        Item savedItem = itemRepository.save(new Item("itemA", 10000, 10));
+
+        //when 조회한 쪽에서 값을 바꿔도
+        itemRepository.findDtoById(savedItem.getId()).get().setItemName("changed");
+
+        //then 캐시된 값은 바뀌지 않는다.
+        assertThat(itemRepository.findDtoById(savedItem.getId()).get().getItemName()).isEqualTo("itemA");
+        assertThat(itemRepository.itemDtoStats().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void cacheMetrics() {
+        //given
+        Item savedItem = itemRepository.save(new Item("itemA", 10000, 10));
+
+        //when
+        itemRepository.findById(savedItem.getId());
+        itemRepository.findById(savedItem.getId());
+        itemRepository.findDtoById(savedItem.getId());
+
+        //then 통계는 cache.* 메트릭으로도 보인다.
+        assertThat(registry.get("cache.gets").tag("cache", "item").tag("result", "hit").functionCounter().count())
+                .isEqualTo(1);
+        assertThat(registry.get("cache.gets").tag("cache", "item").tag("result", "miss").functionCounter().count())
+                .isEqualTo(1);
+        assertThat(registry.get("cache.gets").tag("cache", "itemDto").tag("result", "miss").functionCounter().count())
+                .isEqualTo(1);
+        assertThat(registry.get("cache.evictions").tag("cache", "item").functionCounter()).isNotNull();
+    }
+
+    @Test
+    void findById() {
+        //given
+        Item savedItem = itemRepository.save(new Item("itemA", 10000, 10));
+
+        //when
+        itemRepository.findById(savedItem.getId());
+        itemRepository.findById(savedItem.getId());
+
+        //then
+        assertThat(itemRepository.itemStats().missCount()).isEqualTo(1);
+        assertThat(itemRepository.itemStats().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void evictOnUpdate() {
+        //given
+        Item savedItem = itemRepository.save(new Item("itemA", 10000, 10));
+        itemRepository.findById(savedItem.getId());
+        itemRepository.findDtoById(savedItem.getId());
+
+        //when
+        itemRepository.update(savedItem.getId(), new ItemUpdateDto("itemB", 20000, 20));
+
+        //then
+        assertThat(itemRepository.findById(savedItem.getId()).get().getItemName()).isEqualTo("itemB");
+        assertThat(itemRepository.findDtoById(savedItem.getId()).get().getItemName()).isEqualTo("itemB");
+    }
+
+    @Test
+    void returnCopy() {
+        //given
+        Item savedItem = itemRepository.save(new Item("itemA", 10000, 10));
+
+        //when 조회한 상품을 수정해도
+        itemRepository.findById(savedItem.getId()).get().setItemName("itemB");
+
+        //then 캐시된 값은 바뀌지 않는다.
+        assertThat(itemRepository.findById(savedItem.getId()).get().getItemName()).isEqualTo("itemA");
+    }
+
+    @Test
+    void searchCache() {
+        //given
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            items.add(itemRepository.save(new Item("item" + (char) ('A' + i % 5), 1000 * i, i)));
+        }
+        List<ItemSearchCond> queries = List.of(
+                new ItemSearchCond(null, null),
+                new ItemSearchCond("", null),
+                new ItemSearchCond("itemA", null),
+                new ItemSearchCond("itemB", 50000),
+                new ItemSearchCond(null, 30000));
+
+        //when 조회 위주의 요청에 가끔 수정이 섞여도
+        for (int round = 0; round < 100; round++) {
+            for (ItemSearchCond query : queries) {
+                //then 항상 캐시 없이 조회한 결과와 같아야 한다.
+                assertThat(itemRepository.findAllDto(query)).isEqualTo(target.findAllDto(query));
+            }
+            if (round % 10 == 0) {
+                itemRepository.update(items.get(round).getId(), new ItemUpdateDto("itemA", round, round));
+            }
+        }
+
+        //then
+        CacheStats stats = itemRepository.searchStats();
+        assertThat(stats.requestCount()).isEqualTo(500);
+        assertThat(stats.hitRate()).isGreaterThan(0.8);
+        assertThat(registry.get("cache.gets").tag("cache", "itemSearch").tag("result", "hit").functionCounter().count())
+                .isEqualTo(stats.hitCount());
+        assertThat(registry.get("cache.gets").tag("cache", "itemSearch").tag("result", "miss").functionCounter().count())
+                .isEqualTo(stats.missCount());
+    }
+
+    @Test
+    void searchCacheCopy() {
+        //given
+        itemRepository.save(new Item("itemA", 10000, 10));
+        ItemSearchCond cond = new ItemSearchCond("itemA", null);
+        itemRepository.findAllDto(cond);
+
+        //when 조회한 쪽에서 값을 바꿔도
+        itemRepository.findAllDto(cond).get(0).setItemName("changed");
+
+        //then 캐시된 검색 결과는 바뀌지 않는다.
+        assertThat(itemRepository.findAllDto(cond).get(0).getItemName()).isEqualTo("itemA");
+        assertThat(itemRepository.searchStats().hitCount()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,139 @@
+package hello.itemservice.repository.event;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ItemChangeStreamTest {
+
+    static final int BUFFER_SIZE = 8;
+
+    ItemChangeStream changeStream = new ItemChangeStream(BUFFER_SIZE);
+
+    @AfterEach
+    void afterEach() {
+        changeStream.close();
+    }
+
+    @Test
+    void bufferSizePowerOfTwo() {
+        assertThatThrownBy(() -> new ItemChangeStream(10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void deliverInOrder() throws Exception {
+        //given 구독자 둘
+        Recorder first = new Recorder(100);
+        Recorder second = new Recorder(100);
+        changeStream.subscribe("first", first);
+        changeStream.subscribe("second", second);
+
+        //when 버퍼보다 많이 발행하면
+        for (long id = 0; id < 100; id++) {
+            changeStream.publish(ItemChangeEvent.Type.UPDATE, id, "item" + id, 1000, 1, null);
+        }
+
+        //then 구독자마다 모든 이벤트를 발행 순서대로 받는다.
+        List<Long> expected = LongStream.range(0, 100).boxed().collect(Collectors.toList());
+        assertThat(first.await()).isTrue();
+        assertThat(second.await()).isTrue();
+        assertThat(first.itemIds).isEqualTo(expected);
+        assertThat(second.itemIds).isEqualTo(expected);
+        assertThat(first.batchSizes).allSatisfy(size -> assertThat(size).isBetween(1, BUFFER_SIZE));
+    }
+
+    @Test
+    void backpressure() throws Exception {
+        //given 이벤트를 처리하지 않고 멈춰 있는 구독자
+        CountDownLatch release = new CountDownLatch(1);
+        Recorder recorder = new Recorder(BUFFER_SIZE + 2);
+        changeStream.subscribe("slow", events -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            recorder.onChanges(events);
+        });
+
+        //when 버퍼보다 많이 발행하면
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> publisher = executor.submit(() -> {
+            for (long id = 0; id < BUFFER_SIZE + 2; id++) {
+                changeStream.publish(ItemChangeEvent.Type.SAVE, id, "item" + id, 1000, 1, 0L);
+            }
+        });
+
+        //then 구독자가 처리할 때까지 발행하는 쪽이 기다리고, 이벤트를 잃지 않는다.
+        Thread.sleep(200);
+        assertThat(publisher.isDone()).isFalse();
+        release.countDown();
+        publisher.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+        assertThat(recorder.await()).isTrue();
+        assertThat(recorder.itemIds).hasSize(BUFFER_SIZE + 2);
+    }
+
+    @Test
+    void closeSubscription() throws Exception {
+        //given 멈춰 있는 구독자
+        CountDownLatch release = new CountDownLatch(1);
+        ItemChangeStream.Subscription subscription = changeStream.subscribe("stuck", events -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        //when 구독을 끝내면
+        subscription.close();
+
+        //then 더 이상 그 구독자를 기다리지 않는다.
+        for (long id = 0; id < BUFFER_SIZE * 4; id++) {
+            changeStream.publish(ItemChangeEvent.Type.UPDATE, id, "item", 1000, 1, null);
+        }
+        assertThat(changeStream.getCursor()).isEqualTo(BUFFER_SIZE * 4 - 1);
+        release.countDown();
+    }
+
+    /**
+     * 받은 이벤트의 itemId 를 복사해 두고, expected 개를 받으면 await 가 끝난다.
+     */
+    static class Recorder implements ItemChangeListener {
+
+        final List<Long> itemIds = new CopyOnWriteArrayList<>();
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        final CountDownLatch received;
+
+        Recorder(int expected) {
+            this.received = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void onChanges(List<ItemChangeEvent> events) {
+            batchSizes.add(events.size());
+            for (ItemChangeEvent event : events) {
+                itemIds.add(event.getItemId());
+                received.countDown();
+            }
+        }
+
+        boolean await() throws InterruptedException {
+            return received.await(10, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package hello.itemservice.repository.memory;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAdjustDto;
+import hello.itemservice.repository.ItemAggregatesDto;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemUpdateDto;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ItemJournalTest {
+
+    @TempDir
+    Path directory;
+
+    List<ItemJournal> journals = new ArrayList<>();
+
+    @AfterEach
+    void afterEach() throws IOException {
+        closeAll();
+        new MemoryItemRepository().clearStore();
+    }
+
+    @Test
+    void recoverFromSnapshot() throws Exception {
+        //given
+        MemoryItemRepository itemRepository = new MemoryItemRepository(journal());
+        Item itemA = itemRepository.save(new Item("itemA", 10000, 10));
+        List<Item> items = itemRepository.saveAll(List.of(new Item("itemB", 20000, 20), new Item(null, null, null)));
+        itemRepository.update(itemA.getId(), new ItemUpdateDto("itemA-2", 15000, 15));
+        itemRepository.adjustAll(new ItemSearchCond("itemB", null), new ItemAdjustDto(10, -1));
+        List<Item> before = copies(itemRepository);
+
+        //when 정상 종료(마지막 스냅샷) 후 재시작
+        closeAll();
+        restart();
+        MemoryItemRepository recovered = new MemoryItemRepository(journal());
+
+        //then
+        assertThat(copies(recovered)).isEqualTo(before);
+        assertThat(recovered.findAll(new ItemSearchCond("temA", null))).extracting(Item::getId).containsExactly(itemA.getId());
+        assertThat(recovered.save(new Item("itemC", 0, 0)).getId()).isGreaterThan(items.get(1).getId());
+        assertThat(Files.list(directory).map(path -> path.getFileName().toString()).collect(Collectors.toList()))
+                .noneMatch(name -> name.endsWith(".tmp"));
+    }
+
+    @Test
+    void recoverFromLogAfterCrash() throws Exception {
+        //given 스냅샷 후에도 변경이 있고, 종료 처리 없이 끝난 경우
+        ItemJournal journal = journal();
+        MemoryItemRepository itemRepository = new MemoryItemRepository(journal);
+        Item itemA = itemRepository.save(new Item("itemA", 10000, 10));
+        journal.snapshot();
+        itemRepository.update(itemA.getId(), new ItemUpdateDto("itemA-2", 20000, 20));
+        Item itemB = itemRepository.save(new Item("itemB", 30000, 30));
+        List<Item> before = copies(itemRepository);
+
+        // 마지막 레코드를 쓰다가 멈춘 것처럼 로그 끝에 잘린 레코드를 붙인다.
+        Path lastLog;
+        try (Stream<Path> files = Files.list(directory)) {
+            lastLog = files.filter(path -> path.getFileName().toString().endsWith(".log")).sorted().reduce((a, b) -> b).orElseThrow();
+        }
+        Files.write(lastLog, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        //when
+        restart();
+        MemoryItemRepository recovered = new MemoryItemRepository(journal());
+
+        //then 스냅샷 이후의 로그까지 복구하고, 잘린 레코드는 버린다.
+        assertThat(copies(recovered)).isEqualTo(before);
+        assertThat(recovered.findById(itemA.getId()).get().getVersion()).isEqualTo(1L);
+        assertThat(recovered.findById(itemB.getId())).isPresent();
+    }
+
+    @Test
+    void recoverAfterConcurrentSnapshots() throws Exception {
+        //given saveAll 이 계속 도는 동안 스냅샷을 쓰고
+        ItemJournal journal = journal();
+        MemoryItemRepository itemRepository = new MemoryItemRepository(journal);
+        AtomicBoolean saving = new AtomicBoolean(true);
+        AtomicLong saved = new AtomicLong();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> saver = executor.submit(() -> {
+            while (saving.get()) {
+                List<Item> items = new ArrayList<>();
+                for (int i = 0; i < 2_000; i++) {
+                    items.add(new Item("item" + i, i, i));
+                }
+                itemRepository.saveAll(items);
+                saved.addAndGet(items.size());
+            }
+        });
+        for (int i = 0; i < 20; i++) {
+            journal.snapshot();
+        }
+        saving.set(false);
+        saver.get(30, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        //when 마지막 스냅샷 이후 종료 처리 없이 재시작하면
+        restart();
+        MemoryItemRepository recovered = new MemoryItemRepository(journal());
+
+        //then 스냅샷이 이전 로그를 지웠어도 저장한 상품을 모두 복구한다.
+        assertThat(recovered.aggregates().getItemCount()).isEqualTo(saved.get());
+    }
+
+    @Test
+    void nameTooLong() throws Exception {
+        //given
+        MemoryItemRepository itemRepository = new MemoryItemRepository(journal());
+        Item itemA = itemRepository.save(new Item("itemA", 10000, 10));
+        String longName = "가".repeat(ItemJournal.MAX_NAME_BYTES / 3 + 1); // UTF-8 3 byte
+
+        //when 로그에 남길 수 없는 상품명은 저장, 수정 전에 거절한다.
+        assertThatThrownBy(() -> itemRepository.save(new Item(longName, 20000, 20)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> itemRepository.saveAll(List.of(new Item("itemB", 20000, 20), new Item(longName, 0, 0))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> itemRepository.update(itemA.getId(), new ItemUpdateDto(longName, 30000, 30)))
+                .isInstanceOf(IllegalArgumentException.class);
+        List<Item> before = copies(itemRepository);
+        Item itemC = itemRepository.save(new Item("itemC", 30000, 30));
+
+        //then 아무것도 바뀌지 않았고, 종료 처리 없이 재시작해도 이후 로그까지 복구한다.
+        assertThat(before).containsExactly(itemA);
+        restart();
+        MemoryItemRepository recovered = new MemoryItemRepository(journal());
+        assertThat(copies(recovered)).containsExactly(itemA, itemC);
+    }
+
+    @Test
+    void appendFailure() throws Exception {
+        //given 로그에 덧붙이기가 실패하는 동안
+        AtomicBoolean failing = new AtomicBoolean();
+        ItemJournal journal = new ItemJournal(directory, Duration.ofHours(1)) {
+            @Override
+            public long append(Item item) {
+                if (failing.get()) {
+                    throw new UncheckedIOException(new IOException("no space left on device"));
+                }
+                return super.append(item);
+            }
+        };
+        journals.add(journal);
+        MemoryItemRepository itemRepository = new MemoryItemRepository(journal);
+        Item itemA = itemRepository.save(new Item("itemA", 10000, 10));
+        ItemAggregatesDto aggregates = itemRepository.aggregates();
+        List<Item> before = copies(itemRepository);
+        failing.set(true);
+
+        //when
+        assertThatThrownBy(() -> itemRepository.saveAll(List.of(new Item("itemB", 20000, 20), new Item("itemC", 30000, 30))))
+                .isInstanceOf(UncheckedIOException.class);
+        assertThatThrownBy(() -> itemRepository.update(itemA.getId(), new ItemUpdateDto("itemA-2", 50000, 50)))
+                .isInstanceOf(UncheckedIOException.class);
+
+        //then 실패한 쓰기는 공개되지 않고, 집계와 인덱스도 그대로다.
+        assertThat(copies(itemRepository)).isEqualTo(before);
+        assertThat(itemRepository.aggregates()).isEqualTo(aggregates);
+        assertThat(itemRepository.findAll(new ItemSearchCond("item", 40000))).containsExactly(itemA);
+        assertThat(itemRepository.findAll(new ItemSearchCond("A-2", null))).isEmpty();
+
+        //then 다시 덧붙일 수 있으면 이전 버전에 이어서 수정된다.
+        failing.set(false);
+        itemRepository.update(itemA.getId(), new ItemUpdateDto("itemA-2", 15000, 15, 0L));
+        assertThat(itemRepository.findById(itemA.getId()).get().getVersion()).isEqualTo(1L);
+        List<Item> after = copies(itemRepository);
+        restart();
+        assertThat(copies(new MemoryItemRepository(journal()))).isEqualTo(after);
+    }
+
+    private ItemJournal journal() {
+        ItemJournal journal = new ItemJournal(directory, Duration.ofHours(1));
+        journals.add(journal);
+        return journal;
+    }
+
+    private void closeAll() throws IOException {
+        for (ItemJournal journal : journals) {
+            journal.close();
+        }
+        journals.clear();
+    }
+
+    private static void restart() {
+        new MemoryItemRepository().clearStore();
+    }
+
+    private static List<Item> copies(MemoryItemRepository itemRepository) {
+        return itemRepository.findAll(new ItemSearchCond()).stream()
+                .map(item -> {
+                    Item copy = new Item(item.getItemName(), item.getPrice(), item.getQuantity());
+                    copy.setId(item.getId());
+                    copy.setVersion(item.getVersion());
+                    return copy;
+                })
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,346 @@
+package hello.itemservice.repository.memory;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemAdjustDto;
+import hello.itemservice.repository.ItemAggregatesDto;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemUpdateDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemoryItemRepositoryTest {
+
+    static final int THREAD_COUNT = 64;
+    static final int SAVE_PER_THREAD = 1_000;
+
+    MemoryItemRepository itemRepository = new MemoryItemRepository();
+
+    @AfterEach
+    void afterEach() {
+        itemRepository.clearStore();
+    }
+
+    @Test
+    void concurrentSave() throws Exception {
+        //given
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+        //when
+        runConcurrently(() -> {
+            for (int i = 0; i < SAVE_PER_THREAD; i++) {
+                Item savedItem = itemRepository.save(new Item("item", 10000, 10));
+                ids.add(savedItem.getId());
+            }
+        });
+
+        //then 유실되거나 중복된 id 가 없어야 한다.
+        List<Item> result = itemRepository.findAll(new ItemSearchCond());
+        assertThat(ids).hasSize(THREAD_COUNT * SAVE_PER_THREAD);
+        assertThat(result).hasSize(THREAD_COUNT * SAVE_PER_THREAD);
+    }
+
+    @Test
+    void concurrentUpdate() throws Exception {
+        //given
+        Item savedItem = itemRepository.save(new Item("item", 0, 0));
+        Long itemId = savedItem.getId();
+
+        //when 스레드마다 name, price, quantity 를 같은 값으로 맞춰서 수정한다.
+        runConcurrently(() -> {
+            int value = (int) Thread.currentThread().getId();
+            for (int i = 0; i < SAVE_PER_THREAD; i++) {
+                itemRepository.update(itemId, new ItemUpdateDto("item" + value, value, value));
+            }
+        });
+
+        //then 필드가 섞이지 않고, 하나의 수정 결과만 남아야 한다.
+        Item findItem = itemRepository.findById(itemId).get();
+        assertThat(findItem.getItemName()).isEqualTo("item" + findItem.getPrice());
+        assertThat(findItem.getQuantity()).isEqualTo(findItem.getPrice());
+    }
+
+    @Test
+    void concurrentUpdateWithVersion() throws Exception {
+        //given
+        Item savedItem = itemRepository.save(new Item("item", 0, 0));
+        Long itemId = savedItem.getId();
+
+        //when 스레드마다 읽은 버전으로 수량을 1씩 올리고, 충돌하면 다시 읽어서 재시도한다.
+        runConcurrently(() -> {
+            for (int i = 0; i < SAVE_PER_THREAD; i++) {
+                while (true) {
+                    Item findItem = itemRepository.findById(itemId).get();
+                    ItemUpdateDto updateParam = new ItemUpdateDto(findItem.getItemName(), findItem.getPrice(),
+                            findItem.getQuantity() + 1, findItem.getVersion());
+                    try {
+                        itemRepository.update(itemId, updateParam);
+                        break;
+                    } catch (OptimisticLockingFailureException e) {
+                        // 다른 스레드가 먼저 수정했다.
+                    }
+                }
+            }
+        });
+
+        //then 유실된 수정이 없어야 한다.
+        Item findItem = itemRepository.findById(itemId).get();
+        assertThat(findItem.getQuantity()).isEqualTo(THREAD_COUNT * SAVE_PER_THREAD);
+        assertThat(findItem.getVersion()).isEqualTo(THREAD_COUNT * SAVE_PER_THREAD);
+    }
+
+    @Test
+    void readOnlyItems() {
+        //given
+        Item item = new Item("item", 10000, 10);
+        Item savedItem = itemRepository.save(item);
+
+        //when 저장한 객체나 조회한 상품을 고치려고 하면
+        item.setPrice(20000);
+        Item findItem = itemRepository.findById(savedItem.getId()).get();
+
+        //then 저장소의 상품은 바뀌지 않는다.
+        assertThatThrownBy(() -> findItem.setPrice(30000)).isInstanceOf(UnsupportedOperationException.class);
+        assertThat(itemRepository.findById(savedItem.getId()).get().getPrice()).isEqualTo(10000);
+    }
+
+    @Test
+    void consistentSnapshot() throws Exception {
+        //given 두 상품의 수량 합이 항상 1000 이 되도록, 한 스레드가 수량을 계속 옮긴다.
+        Item itemA = itemRepository.save(new Item("snapshot-A", 10000, 500));
+        Item itemB = itemRepository.save(new Item("snapshot-B", 10000, 500));
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            Random random = new Random();
+            while (running.get()) {
+                int a = itemRepository.findById(itemA.getId()).get().getQuantity();
+                int b = itemRepository.findById(itemB.getId()).get().getQuantity();
+                int delta = random.nextInt(21) - 10;
+                itemRepository.updateAll(Map.of(
+                        itemA.getId(), new ItemUpdateDto("snapshot-A", 10000, a - delta),
+                        itemB.getId(), new ItemUpdateDto("snapshot-B", 10000, b + delta)));
+            }
+        });
+        writer.start();
+
+        //when 락 없이 동시에 검색해도
+        Set<Integer> sums = ConcurrentHashMap.newKeySet();
+        try {
+            runConcurrently(() -> {
+                for (int i = 0; i < SAVE_PER_THREAD; i++) {
+                    sums.add(itemRepository.findAll(new ItemSearchCond("snapshot", null)).stream()
+                            .mapToInt(Item::getQuantity).sum());
+                }
+            });
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+
+        //then 항상 한 시점의 값을 본다.
+        assertThat(sums).containsExactly(1000);
+    }
+
+    @Test
+    void aggregatesAfterConcurrentWrites() throws Exception {
+        //given
+        Item savedItem = itemRepository.save(new Item("item", 0, 0));
+
+        //when 여러 스레드가 저장과 수정을 섞어서 하면
+        runConcurrently(() -> {
+            Random random = new Random();
+            for (int i = 0; i < SAVE_PER_THREAD / 10; i++) {
+                itemRepository.save(new Item("item", random.nextInt(200_000), random.nextInt(100)));
+                itemRepository.update(savedItem.getId(), new ItemUpdateDto("item", random.nextInt(200_000), random.nextInt(100)));
+            }
+        });
+
+        //then 유지한 집계가 전체를 다시 계산한 값과 같다.
+        ItemAggregatesDto expected = new ItemAggregatesDto();
+        itemRepository.forEachDto(new ItemSearchCond(), item -> expected.add(item.getPrice(), item.getQuantity()));
+        assertThat(itemRepository.aggregates()).isEqualTo(expected);
+        assertThat(expected.getItemCount()).isEqualTo(1 + THREAD_COUNT * SAVE_PER_THREAD / 10);
+    }
+
+    @Test
+    void updateWithStaleVersion() {
+        //given
+        Item savedItem = itemRepository.save(new Item("item", 10000, 10));
+        itemRepository.update(savedItem.getId(), new ItemUpdateDto("item", 20000, 10, 0L));
+
+        //when 이미 수정된 이전 버전으로 수정하면
+        ItemUpdateDto staleParam = new ItemUpdateDto("item", 30000, 10, 0L);
+
+        //then
+        assertThatThrownBy(() -> itemRepository.update(savedItem.getId(), staleParam))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(itemRepository.findById(savedItem.getId()).get().getPrice()).isEqualTo(20000);
+    }
+
+    @Test
+    void updateAllWithStaleVersion() {
+        //given
+        Item item1 = itemRepository.save(new Item("item1", 10000, 10));
+        Item item2 = itemRepository.save(new Item("item2", 20000, 20));
+        itemRepository.update(item1.getId(), new ItemUpdateDto("item1-1", 11000, 11));
+
+        //when 하나라도 이전 버전으로 수정하면
+        ItemUpdateDto stale = new ItemUpdateDto("item1-2", 12000, 12);
+        stale.setVersion(0L);
+        Map<Long, ItemUpdateDto> updateParams = new HashMap<>();
+        updateParams.put(item2.getId(), new ItemUpdateDto("item2-1", 21000, 21));
+        updateParams.put(item1.getId(), stale);
+
+        //then 충돌이고, 어떤 상품도 바뀌지 않는다.
+        assertThatThrownBy(() -> itemRepository.updateAll(updateParams))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(itemRepository.findById(item1.getId()).get().getItemName()).isEqualTo("item1-1");
+        assertThat(itemRepository.findById(item2.getId()).get().getItemName()).isEqualTo("item2");
+    }
+
+    @Test
+    void findItemsAfterUpdate() {
+        //given
+        Item item1 = itemRepository.save(new Item("itemA-1", 10000, 10));
+        Item item2 = itemRepository.save(new Item("itemA-2", 20000, 20));
+        Item item3 = itemRepository.save(new Item("itemB-1", 30000, 30));
+
+        //when 인덱스에 반영된 상품명, 가격이 수정된다.
+        itemRepository.update(item2.getId(), new ItemUpdateDto("itemB-2", 5000, 20));
+        item2 = itemRepository.findById(item2.getId()).get();
+
+        //then
+        test("itemA", null, item1);
+        test("temB", null, item2, item3);
+        test("B", null, item2, item3);
+        test(null, 10000, item1, item2);
+        test("itemB", 10000, item2);
+        test("itemC", null);
+    }
+
+    @Test
+    void findItemsPage() {
+        //given
+        Item item1 = itemRepository.save(new Item("itemA-1", 10000, 10));
+        Item item2 = itemRepository.save(new Item("itemA-2", 20000, 20));
+        Item item3 = itemRepository.save(new Item("itemB-1", 30000, 30));
+        Item item4 = itemRepository.save(new Item("itemA-3", 40000, 40));
+
+        //when, then 인덱스 종류(전체, 가격, 상품명)와 관계없이 커서 기준으로 잘린다.
+        testPage(null, null, item2.getId(), null, item3, item4);
+        testPage(null, 30000, item1.getId(), null, item2, item3);
+        testPage("itemA", null, item1.getId(), null, item2, item4);
+        testPage("itemA", null, null, item4.getId(), item1, item2);
+        testPage(null, 30000, null, item4.getId(), item2, item3);
+    }
+
+    @Test
+    void findItemsByPriceBucket() {
+        //given 가격 구간 경계 근처의 상품들
+        Item item1 = itemRepository.save(new Item("item1", 0, 1));
+        Item item2 = itemRepository.save(new Item("item2", 1025, 1));
+        Item item3 = itemRepository.save(new Item("item3", 1024, 1));
+        Item item4 = itemRepository.save(new Item("item4", 1023, 1));
+        Item item5 = itemRepository.save(new Item("item5", 2048, 1));
+
+        //when, then 여러 구간을 id 순으로 합치고, 같은 구간의 비싼 상품은 값으로 걸러진다.
+        test(null, 1024, item1, item3, item4);
+        test(null, 1023, item1, item4);
+        test(null, 0, item1);
+        testPage(null, 2048, item1.getId(), null, item2, item3);
+
+        //when 다른 구간으로 가격을 바꾸면
+        itemRepository.update(item5.getId(), new ItemUpdateDto("item5", 1, 1));
+        item5 = itemRepository.findById(item5.getId()).get();
+
+        //then
+        test(null, 1, item1, item5);
+        test(null, 1024, item1, item3, item4, item5);
+    }
+
+    @Test
+    void findItemsByAllGrams() {
+        //given 앞 trigram 은 같고 뒤쪽만 다른 상품들
+        Item item1 = itemRepository.save(new Item("apple-pie", 10000, 10));
+        Item item2 = itemRepository.save(new Item("apple-tart", 20000, 20));
+        Item item3 = itemRepository.save(new Item("banana-pie", 5000, 30));
+        Item item4 = itemRepository.save(new Item("apple-pie-large", 40000, 40));
+
+        //when, then 모든 trigram 의 교집합에 가격 조건을 함께 건다.
+        test("apple-pie", null, item1, item4);
+        test("e-pie", null, item1, item4);
+        test("na-pie", null, item3);
+        test("apple-pie", 20000, item1);
+        test("apple", 5000);
+        test("pie-xyz", null);
+        testPage("e-pie", 50000, item1.getId(), null, item4);
+    }
+
+    @Test
+    void adjustAllIgnoresPage() {
+        //given
+        Item item1 = itemRepository.save(new Item("itemA-1", 10000, 10));
+        itemRepository.save(new Item("itemA-2", 20000, 20));
+        itemRepository.save(new Item("itemA-3", 30000, 30));
+
+        //when 페이지 조건이 남아있어도
+        ItemSearchCond cond = new ItemSearchCond("itemA", 20000);
+        cond.setAfterId(item1.getId());
+        cond.setSize(1);
+        int count = itemRepository.adjustAll(cond, new ItemAdjustDto(null, 1));
+
+        //then 검색 조건에 맞는 상품 전체를 조정한다.
+        assertThat(count).isEqualTo(2);
+        assertThat(itemRepository.findAll(new ItemSearchCond("itemA", null)))
+                .extracting(Item::getQuantity).containsExactly(11, 21, 30);
+    }
+
+    void testPage(String itemName, Integer maxPrice, Long afterId, Long beforeId, Item... items) {
+        ItemSearchCond cond = new ItemSearchCond(itemName, maxPrice);
+        cond.setAfterId(afterId);
+        cond.setBeforeId(beforeId);
+        cond.setSize(2);
+        List<Item> result = itemRepository.findAll(cond);
+        assertThat(result).containsExactly(items);
+    }
+
+    void test(String itemName, Integer maxPrice, Item... items) {
+        List<Item> result = itemRepository.findAll(new ItemSearchCond(itemName, maxPrice));
+        assertThat(result).containsExactly(items);
+    }
+
+    private void runConcurrently(Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.run();
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+}
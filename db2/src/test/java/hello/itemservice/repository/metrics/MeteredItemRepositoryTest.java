@@ -0,0 +1,45 @@
+package hello.itemservice.repository.metrics;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.memory.MemoryItemRepository;
+import hello.itemservice.service.ItemService;
+import hello.itemservice.service.ItemServiceV1;
+import hello.itemservice.service.MeteredItemService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MeteredItemRepositoryTest {
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    MemoryItemRepository target = new MemoryItemRepository();
+    ItemService itemService = new MeteredItemService(
+            new ItemServiceV1(new MeteredItemRepository(target, registry)), registry);
+
+    @AfterEach
+    void afterEach() {
+        target.clearStore();
+    }
+
+    @Test
+    void record() {
+        //given
+        Item savedItem = itemService.save(new Item("itemA", 10000, 10));
+        itemService.save(new Item("itemB", 20000, 20));
+
+        //when
+        itemService.findById(savedItem.getId());
+        itemService.findItems(new ItemSearchCond());
+
+        //then
+        assertThat(registry.get("item.service").tag("method", "save").timer().count()).isEqualTo(2);
+        assertThat(registry.get("item.service").tag("method", "findById").timer().count()).isEqualTo(1);
+        assertThat(registry.get("item.repository")
+                .tag("backend", "MemoryItemRepository").tag("method", "save").timer().count()).isEqualTo(2);
+        assertThat(registry.get("item.repository.rows").tag("method", "findAll").summary().totalAmount())
+                .isEqualTo(2);
+    }
+}
@@ -0,0 +1,258 @@
+package hello.itemservice.repository.writebehind;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemSearchCond;
+import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.repository.cache.CachingItemRepository;
+import hello.itemservice.repository.memory.MemoryItemRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionOperations;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WriteBehindItemRepositoryTest {
+
+    // 반영된 묶음의 크기를 기록한다.
+    List<Integer> savedBatches = new CopyOnWriteArrayList<>();
+    List<Integer> updatedBatches = new CopyOnWriteArrayList<>();
+    // 상품명이 POISON 인 쓰기가 들어있는 묶음은 통째로 실패한다.
+    static final String POISON = "poison";
+    CountDownLatch saveBlocker = new CountDownLatch(0);
+
+    MemoryItemRepository target = new MemoryItemRepository() {
+        @Override
+        public List<Item> saveAll(Collection<Item> items) {
+            await(saveBlocker);
+            if (items.stream().anyMatch(item -> POISON.equals(item.getItemName()))) {
+                throw new IllegalArgumentException("poisoned save");
+            }
+            savedBatches.add(items.size());
+            return super.saveAll(items);
+        }
+
+        @Override
+        public int updateAll(Map<Long, ItemUpdateDto> updateParams) {
+            if (updateParams.values().stream().anyMatch(updateParam -> POISON.equals(updateParam.getItemName()))) {
+                throw new IllegalArgumentException("poisoned update");
+            }
+            updatedBatches.add(updateParams.size());
+            return super.updateAll(updateParams);
+        }
+    };
+
+    @AfterEach
+    void afterEach() {
+        target.clearStore();
+    }
+
+    @Test
+    void coalesceUpdates() throws Exception {
+        //given 시간으로는 반영되지 않게 한다.
+        WriteBehindItemRepository itemRepository = writeBehind(1_000, Duration.ofHours(1));
+        Item savedItem = itemRepository.save(new Item("item", 0, 0));
+
+        //when 같은 상품을 여러 번 수정하면
+        for (int i = 1; i <= 100; i++) {
+            itemRepository.update(savedItem.getId(), new ItemUpdateDto("item" + i, i, i));
+        }
+
+        //then 반영 전에도 같은 서버에서는 수정한 값이 보이고, 반영은 마지막 값 한 번만 한다.
+        assertThat(target.findById(savedItem.getId()).get().getPrice()).isEqualTo(0);
+        assertThat(itemRepository.findById(savedItem.getId()).get().getPrice()).isEqualTo(100);
+        assertThat(itemRepository.findDtoById(savedItem.getId()).get().getItemName()).isEqualTo("item100");
+
+        itemRepository.close();
+        assertThat(updatedBatches).containsExactly(1);
+        assertThat(target.findById(savedItem.getId()).get().getPrice()).isEqualTo(100);
+    }
+
+    @Test
+    void flushBySizeAndTime() throws Exception {
+        //given
+        WriteBehindItemRepository itemRepository = writeBehind(10, Duration.ofMillis(50));
+        List<Item> items = itemRepository.saveAll(List.of(new Item("itemA", 0, 0), new Item("itemB", 0, 0)));
+
+        //when 묶음 크기보다 적게 수정해도
+        for (Item item : items) {
+            itemRepository.update(item.getId(), new ItemUpdateDto(item.getItemName(), 10000, 10));
+        }
+
+        //then 시간이 지나면 반영된다.
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (target.findById(items.get(1).getId()).get().getPrice() != 10000 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(updatedBatches).containsExactly(2);
+        itemRepository.close();
+    }
+
+    @Test
+    void searchAfterUpdate() throws Exception {
+        //given
+        WriteBehindItemRepository itemRepository = writeBehind(1_000, Duration.ofHours(1));
+        Item savedItem = itemRepository.save(new Item("itemA", 10000, 10));
+
+        //when
+        itemRepository.update(savedItem.getId(), new ItemUpdateDto("itemB", 20000, 20));
+
+        //then 검색은 대기 중인 수정을 반영한 뒤에 조회한다.
+        assertThat(itemRepository.findAll(new ItemSearchCond("itemB", null))).hasSize(1);
+        itemRepository.close();
+    }
+
+    @Test
+    void concurrentSave() throws Exception {
+        //given 용량을 작게 해서 쓰는 쪽이 기다리게 한다.
+        WriteBehindItemRepository itemRepository =
+                new WriteBehindItemRepository(target, TransactionOperations.withoutTransaction(), 8, 16, Duration.ofMillis(10));
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        int threadCount = 16;
+        int savePerThread = 100;
+
+        //when
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < savePerThread; i++) {
+                    Item savedItem = itemRepository.save(new Item("item", 10000, 10));
+                    ids.add(savedItem.getId());
+                    itemRepository.update(savedItem.getId(), new ItemUpdateDto("updated", 20000, 20));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        itemRepository.close();
+
+        //then 모든 쓰기가 반영되고, save 는 여러 건씩 묶어서 반영된다.
+        assertThat(ids).hasSize(threadCount * savePerThread);
+        assertThat(target.findAll(new ItemSearchCond("updated", null))).hasSize(threadCount * savePerThread);
+        assertThat(savedBatches.size()).isLessThan(threadCount * savePerThread);
+    }
+
+    @Test
+    void poisonedUpdateBatch() throws Exception {
+        //given
+        WriteBehindItemRepository itemRepository = writeBehind(1_000, Duration.ofHours(1));
+        Item itemA = itemRepository.save(new Item("itemA", 0, 0));
+        Item itemB = itemRepository.save(new Item("itemB", 0, 0));
+        Item itemC = itemRepository.save(new Item("itemC", 0, 0));
+
+        //when 한 묶음에 실패하는 수정이 섞여 있으면
+        itemRepository.update(itemA.getId(), new ItemUpdateDto("itemA", 100, 1));
+        itemRepository.update(itemB.getId(), new ItemUpdateDto(POISON, 200, 2));
+        itemRepository.update(itemC.getId(), new ItemUpdateDto("itemC", 300, 3));
+        itemRepository.flush();
+
+        //then 나머지 수정은 반영되고, 실패한 수정만 남는다. (더 이상 반영된 것처럼 보이지 않는다)
+        assertThat(target.findById(itemA.getId()).get().getPrice()).isEqualTo(100);
+        assertThat(target.findById(itemC.getId()).get().getPrice()).isEqualTo(300);
+        assertThat(itemRepository.findById(itemB.getId()).get().getItemName()).isEqualTo("itemB");
+        assertThat(itemRepository.getFailedUpdates()).containsOnlyKeys(itemB.getId());
+
+        //when 같은 상품이 다시 수정되어 반영되면, 실패한 수정은 다시 반영하지 않는다.
+        itemRepository.update(itemB.getId(), new ItemUpdateDto("itemB-1", 210, 2));
+        itemRepository.flush();
+        itemRepository.retryFailedUpdates();
+        itemRepository.flush();
+
+        //then
+        assertThat(itemRepository.getFailedUpdates()).isEmpty();
+        assertThat(target.findById(itemB.getId()).get().getItemName()).isEqualTo("itemB-1");
+        itemRepository.close();
+    }
+
+    @Test
+    void poisonedSaveBatch() throws Exception {
+        //given 앞의 반영이 끝나지 않게 막아서, 다음 save 들이 한 묶음으로 모이게 한다.
+        WriteBehindItemRepository itemRepository = writeBehind(1_000, Duration.ofHours(1));
+        saveBlocker = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        Future<Item> first = executor.submit(() -> itemRepository.save(new Item("first", 0, 0)));
+        Thread.sleep(100);
+        Future<Item> good = executor.submit(() -> itemRepository.save(new Item("good", 0, 0)));
+        Future<Item> poisoned = executor.submit(() -> itemRepository.save(new Item(POISON, 0, 0)));
+        Thread.sleep(100);
+
+        //when
+        saveBlocker.countDown();
+
+        //then 같은 묶음의 다른 save 는 성공하고, 실패한 save 만 예외를 받는다.
+        assertThat(first.get(5, TimeUnit.SECONDS).getId()).isNotNull();
+        Item goodItem = good.get(5, TimeUnit.SECONDS);
+        assertThat(target.findById(goodItem.getId()).get().getItemName()).isEqualTo("good");
+        assertThatThrownBy(() -> poisoned.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalArgumentException.class);
+        executor.shutdown();
+        itemRepository.close();
+    }
+
+    @Test
+    void withCache() throws Exception {
+        //given 캐시를 write-behind 안쪽에 두는 설정(JpaConfig)과 같게 감싼다.
+        CachingItemRepository cache = new CachingItemRepository(target, 100, Duration.ofMinutes(10), 1_000,
+                new SimpleMeterRegistry());
+        WriteBehindItemRepository itemRepository = new WriteBehindItemRepository(cache,
+                TransactionOperations.withoutTransaction(), 1_000, 10_000, Duration.ofHours(1));
+        Item savedItem = itemRepository.save(new Item("item", 0, 0));
+        itemRepository.findById(savedItem.getId());
+
+        //when 대기 중인 수정을 조회한 뒤에 반영하면
+        itemRepository.update(savedItem.getId(), new ItemUpdateDto("itemA", 100, 1));
+        assertThat(itemRepository.findById(savedItem.getId()).get().getItemName()).isEqualTo("itemA");
+        itemRepository.flush();
+
+        //then 캐시는 반영된 값과 버전을 돌려주고, 그 버전으로 수정할 수 있다.
+        Item findItem = itemRepository.findById(savedItem.getId()).get();
+        assertThat(findItem.getVersion()).isEqualTo(savedItem.getVersion() + 1);
+        itemRepository.update(savedItem.getId(), new ItemUpdateDto("itemB", 200, 2, findItem.getVersion()));
+        assertThat(itemRepository.findById(savedItem.getId()).get().getItemName()).isEqualTo("itemB");
+
+        //when 반영에 실패한 수정은
+        itemRepository.update(savedItem.getId(), new ItemUpdateDto(POISON, 300, 3));
+        itemRepository.findById(savedItem.getId());
+        itemRepository.flush();
+
+        //then 캐시에 남지 않는다.
+        assertThat(itemRepository.findById(savedItem.getId()).get().getItemName()).isEqualTo("itemB");
+        assertThat(cache.findDtoById(savedItem.getId()).get().getItemName()).isEqualTo("itemB");
+        itemRepository.close();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private WriteBehindItemRepository writeBehind(int batchSize, Duration flushInterval) {
+        return new WriteBehindItemRepository(target, TransactionOperations.withoutTransaction(),
+                batchSize, 10_000, flushInterval);
+    }
+}
@@ -0,0 +1,152 @@
+package hello.itemservice.service;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.repository.memory.MemoryItemRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CoalescingItemServiceTest {
+
+    static final int THREAD_COUNT = 16;
+
+    CountingItemRepository repository = new CountingItemRepository();
+    ItemService itemService = new CoalescingItemService(new ItemServiceV1(repository), Duration.ofMinutes(1));
+
+    @AfterEach
+    void afterEach() {
+        repository.clearStore();
+    }
+
+    @Test
+    void burst() throws Exception {
+        //given
+        Item savedItem = itemService.save(new Item("itemA", 10000, 10));
+        repository.blockFindById();
+
+        //when 같은 상품을 동시에 조회하면
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        CountDownLatch ready = new CountDownLatch(THREAD_COUNT);
+        List<Future<Optional<Item>>> futures = new ArrayList<>();
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            futures.add(executor.submit(() -> {
+                ready.countDown();
+                return itemService.findById(savedItem.getId());
+            }));
+        }
+        ready.await();
+        Thread.sleep(200); // 모든 요청이 먼저 시작한 조회를 기다리게 한다.
+        repository.release();
+
+        List<Item> items = new ArrayList<>();
+        for (Future<Optional<Item>> future : futures) {
+            items.add(future.get(10, TimeUnit.SECONDS).get());
+        }
+        executor.shutdown();
+
+        //then 저장소는 한 번만 조회하고, 모두 같은 값을 각자의 객체로 받는다.
+        assertThat(repository.findByIdCount.get()).isEqualTo(1);
+        assertThat(items).allSatisfy(item -> assertThat(item).isEqualTo(savedItem));
+        Set<Item> distinctItems = Collections.newSetFromMap(new IdentityHashMap<>());
+        distinctItems.addAll(items);
+        assertThat(distinctItems).hasSize(THREAD_COUNT);
+    }
+
+    @Test
+    void missingId() {
+        //when 없는 상품을 여러 번 조회하면
+        Optional<Item> first = itemService.findById(999L);
+        Optional<Item> second = itemService.findById(999L);
+
+        //then 저장소는 한 번만 조회한다.
+        assertThat(first).isEmpty();
+        assertThat(second).isEmpty();
+        assertThat(repository.findByIdCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    void missingIdForgottenAfterSave() {
+        //given
+        itemService.findById(1L);
+
+        //when 상품을 저장하면
+        Item savedItem = itemService.save(new Item("itemA", 10000, 10));
+
+        //then 없는 상품으로 기억한 id 를 잊는다.
+        assertThat(itemService.findById(savedItem.getId())).contains(savedItem);
+    }
+
+    @Test
+    void missingIdKeptAfterOtherSave() {
+        //given
+        itemService.findById(999L);
+
+        //when 다른 상품을 저장해도
+        itemService.save(new Item("itemA", 10000, 10));
+        itemService.saveAll(List.of(new Item("itemB", 20000, 20)));
+
+        //then 없는 상품으로 기억한 id 는 그대로 저장소까지 가지 않는다.
+        assertThat(itemService.findById(999L)).isEmpty();
+        assertThat(repository.findByIdCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    void findByIdAfterUpdate() {
+        //given
+        Item savedItem = itemService.save(new Item("itemA", 10000, 10));
+        itemService.findById(savedItem.getId());
+
+        //when
+        itemService.update(savedItem.getId(), new ItemUpdateDto("itemB", 20000, 20));
+
+        //then 수정 후의 조회는 결과를 공유하지 않고 다시 조회한다.
+        Item findItem = itemService.findById(savedItem.getId()).get();
+        assertThat(findItem.getItemName()).isEqualTo("itemB");
+        assertThat(repository.findByIdCount.get()).isGreaterThanOrEqualTo(2);
+    }
+
+    /**
+     * findById 호출 수를 세고, 필요하면 release() 까지 조회를 붙잡아 둔다.
+     */
+    static class CountingItemRepository extends MemoryItemRepository {
+
+        final AtomicInteger findByIdCount = new AtomicInteger();
+        volatile CountDownLatch released = new CountDownLatch(0);
+
+        void blockFindById() {
+            findByIdCount.set(0);
+            released = new CountDownLatch(1);
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        @Override
+        public Optional<Item> findById(Long id) {
+            findByIdCount.incrementAndGet();
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.findById(id);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package hello.itemservice.service;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemUpdateDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 캐시를 켠 상태(CachingItemRepository)로 ItemServiceTest 를 그대로 실행한다.
+ * ItemRepositoryCacheTest 는 테스트 트랜잭션 안에서 실행되므로, 서비스 트랜잭션으로 커밋되는지는 여기서 확인한다.
+ */
+@SpringBootTest(properties = {"item.cache.enabled=true", "item.cache.aggregates-ttl=200ms"})
+class ItemServiceCacheTest extends ItemServiceTest {
+
+    @Test
+    void cachedWritesCommitted() {
+        //given 캐시된 상품
+        Item savedItem = itemService.save(new Item("item", 10000, 10));
+        itemService.findById(savedItem.getId());
+
+        //when
+        itemService.update(savedItem.getId(), new ItemUpdateDto("itemB", 20000, 20));
+
+        //then 캐시를 거쳐도 변경은 커밋되어 DB 에 있고, 캐시도 새 값을 돌려준다.
+        Integer price = new JdbcTemplate(dataSource).queryForObject(
+                "select price from item where id = ?", Integer.class, savedItem.getId());
+        assertThat(price).isEqualTo(20000);
+        assertThat(itemService.findById(savedItem.getId()).get().getItemName()).isEqualTo("itemB");
+    }
+}
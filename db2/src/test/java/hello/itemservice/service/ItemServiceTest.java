@@ -0,0 +1,197 @@
+package hello.itemservice.service;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.repository.event.ItemChangeEvent;
+import hello.itemservice.repository.event.ItemChangeStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 여러 스레드가 각자 트랜잭션으로 커밋해야 하므로 @Transactional 을 붙이지 않는다.
+ * 커밋된 데이터가 다른 테스트에 남지 않도록 끝나면 컨텍스트(DB)를 버린다.
+ */
+@SpringBootTest(properties = "item.cache.aggregates-ttl=200ms")
+@DirtiesContext
+class ItemServiceTest {
+
+    static final int THREAD_COUNT = 4;
+    static final int UPDATE_PER_THREAD = 25;
+
+    @Autowired
+    ItemService itemService;
+
+    @Autowired
+    ItemChangeStream changeStream;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Test
+    void concurrentUpdate() throws Exception {
+        //given
+        Item savedItem = itemService.save(new Item("item", 0, 0));
+        Long itemId = savedItem.getId();
+
+        //when 버전 없이 동시에 수정하면, 커밋 시점에 충돌한 요청은 서비스에서 재시도한다.
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < UPDATE_PER_THREAD; i++) {
+                    // 값이 바뀌어야 UPDATE 가 실행되고 버전이 올라간다.
+                    int value = thread * 1000 + i + 1;
+                    itemService.update(itemId, new ItemUpdateDto("item" + value, value, value));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        //then 모든 수정이 한 번씩 반영되었다.
+        Item findItem = itemService.findById(itemId).get();
+        assertThat(findItem.getVersion()).isEqualTo(THREAD_COUNT * UPDATE_PER_THREAD);
+        assertThat(findItem.getItemName()).isEqualTo("item" + findItem.getPrice());
+    }
+
+    @Test
+    void updateWithStaleVersion() {
+        //given
+        Item savedItem = itemService.save(new Item("item", 10000, 10));
+        itemService.update(savedItem.getId(), new ItemUpdateDto("item", 20000, 10, 0L));
+
+        //when 수정 폼을 연 뒤에 다른 사용자가 먼저 수정했으면
+        ItemUpdateDto staleParam = new ItemUpdateDto("item", 30000, 10, 0L);
+
+        //then 재시도하지 않고 충돌을 알린다.
+        assertThatThrownBy(() -> itemService.update(savedItem.getId(), staleParam))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(itemService.findById(savedItem.getId()).get().getPrice()).isEqualTo(20000);
+    }
+
+    @Test
+    void aggregatesAfterCommit() {
+        //given 집계를 한 번 조회해서 캐시된 상태
+        Item savedItem = itemService.save(new Item("item", 10000, 10));
+        long inventoryValue = itemService.aggregates().getInventoryValue();
+
+        //when 다른 트랜잭션에서 수정하면
+        itemService.update(savedItem.getId(), new ItemUpdateDto("item", 10000, 15));
+
+        //then 다음 조회에 반영된다.
+        assertThat(itemService.aggregates().getInventoryValue()).isEqualTo(inventoryValue + 10000 * 5);
+    }
+
+    @Test
+    void aggregatesAfterExternalWrite() throws Exception {
+        //given 집계를 한 번 조회해서 캐시된 상태
+        Item savedItem = itemService.save(new Item("item", 10000, 10));
+        long inventoryValue = itemService.aggregates().getInventoryValue();
+
+        //when 저장소를 거치지 않고 (다른 노드처럼) 수정하면
+        new JdbcTemplate(dataSource).update("update item set quantity = 15, version = version + 1 where id = ?",
+                savedItem.getId());
+
+        //then aggregatesTtl 이 지나면 다시 집계한다.
+        Thread.sleep(300);
+        assertThat(itemService.aggregates().getInventoryValue()).isEqualTo(inventoryValue + 10000 * 5);
+    }
+
+    @Test
+    void apply() {
+        //given
+        Item savedItem = itemService.save(new Item("item", 10000, 10));
+
+        //when 등록, 수정을 한 번에 반영하면
+        List<Long> itemIds = itemService.apply(List.of(
+                ItemCommand.create(new Item("itemA", 1000, 1)),
+                ItemCommand.update(savedItem.getId(), new ItemUpdateDto("item", 20000, 20)),
+                ItemCommand.create(new Item("itemB", 2000, 2))));
+
+        //then 명령 순서대로 id 를 돌려준다.
+        assertThat(itemIds).hasSize(3);
+        assertThat(itemIds.get(1)).isEqualTo(savedItem.getId());
+        assertThat(itemService.findById(itemIds.get(0)).get().getItemName()).isEqualTo("itemA");
+        assertThat(itemService.findById(itemIds.get(1)).get().getPrice()).isEqualTo(20000);
+        assertThat(itemService.findById(itemIds.get(2)).get().getItemName()).isEqualTo("itemB");
+    }
+
+    @Test
+    void applyAllOrNothing() {
+        //given
+        Item savedItem = itemService.save(new Item("item", 10000, 10));
+        itemService.update(savedItem.getId(), new ItemUpdateDto("item", 20000, 10, 0L));
+        long itemCount = itemService.aggregates().getItemCount();
+
+        //when 마지막 명령이 충돌하면
+        List<ItemCommand> commands = List.of(
+                ItemCommand.create(new Item("itemA", 1000, 1)),
+                ItemCommand.update(savedItem.getId(), new ItemUpdateDto("item", 30000, 10, 0L)));
+
+        //then 앞의 등록도 반영하지 않는다.
+        assertThatThrownBy(() -> itemService.apply(commands))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(itemService.aggregates().getItemCount()).isEqualTo(itemCount);
+        assertThat(itemService.findById(savedItem.getId()).get().getPrice()).isEqualTo(20000);
+    }
+
+    @Test
+    void changesAfterCommit() throws Exception {
+        //given
+        // 링 버퍼의 이벤트는 재사용되므로 필요한 값만 복사해 둔다.
+        List<String> events = new CopyOnWriteArrayList<>();
+        List<Long> itemIds = new CopyOnWriteArrayList<>();
+        try (ItemChangeStream.Subscription subscription = changeStream.subscribe("test", changes -> {
+            for (ItemChangeEvent event : changes) {
+                events.add(event.getType() + " " + event.getPrice() + " v" + event.getVersion());
+                itemIds.add(event.getItemId());
+            }
+        })) {
+
+            //when 커밋된 변경과 롤백된 변경
+            Item savedItem = itemService.save(new Item("item", 10000, 10));
+            itemService.update(savedItem.getId(), new ItemUpdateDto("item", 20000, 20));
+            List<ItemCommand> rollback = List.of(
+                    ItemCommand.create(new Item("itemA", 1000, 1)),
+                    ItemCommand.update(savedItem.getId(), new ItemUpdateDto("item", 30000, 30, 0L)));
+            assertThatThrownBy(() -> itemService.apply(rollback))
+                    .isInstanceOf(OptimisticLockingFailureException.class);
+            itemService.update(savedItem.getId(), new ItemUpdateDto("item", 40000, 40));
+
+            //then 커밋된 변경만 순서대로, 커밋된 버전과 함께 받는다.
+            long version = savedItem.getVersion();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (events.size() < 3 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(events).containsExactly("SAVE 10000 v" + version,
+                    "UPDATE 20000 v" + (version + 1), "UPDATE 40000 v" + (version + 2));
+            assertThat(itemService.findById(savedItem.getId()).get().getVersion()).isEqualTo(version + 2);
+            assertThat(itemIds).containsOnly(savedItem.getId());
+        }
+    }
+}
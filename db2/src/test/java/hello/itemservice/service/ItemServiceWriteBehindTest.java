@@ -0,0 +1,44 @@
+package hello.itemservice.service;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.repository.writebehind.WriteBehindItemRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 캐시와 write-behind 를 같이 켠 설정(JpaConfig)에서, 반영된 뒤에 캐시가 반영 전 값을 돌려주지 않는지 확인한다.
+ */
+@SpringBootTest(properties = {"item.cache.enabled=true", "item.write-behind.enabled=true",
+        "item.write-behind.flush-interval=1h"})
+@DirtiesContext
+class ItemServiceWriteBehindTest {
+
+    @Autowired
+    ItemService itemService;
+
+    @Autowired
+    WriteBehindItemRepository writeBehindItemRepository;
+
+    @Test
+    void editAfterFlush() {
+        //given 조회해서 캐시된 상품을 수정하고
+        Item savedItem = itemService.save(new Item("item", 10000, 10));
+        itemService.findById(savedItem.getId());
+        itemService.update(savedItem.getId(), new ItemUpdateDto("itemA", 20000, 20));
+        itemService.findById(savedItem.getId());
+
+        //when 반영된 뒤에 조회하면
+        writeBehindItemRepository.flush();
+        Item findItem = itemService.findById(savedItem.getId()).get();
+
+        //then 반영된 버전을 돌려주고, 그 버전으로 수정 폼을 저장할 수 있다.
+        assertThat(findItem.getVersion()).isEqualTo(savedItem.getVersion() + 1);
+        itemService.update(savedItem.getId(), new ItemUpdateDto("itemB", 30000, 30, findItem.getVersion()));
+        assertThat(itemService.findById(savedItem.getId()).get().getItemName()).isEqualTo("itemB");
+    }
+}
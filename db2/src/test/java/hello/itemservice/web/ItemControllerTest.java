@@ -0,0 +1,172 @@
+package hello.itemservice.web;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.ItemRepository;
+import hello.itemservice.repository.ItemUpdateDto;
+import hello.itemservice.repository.jpa.StatementCounter;
+import hello.itemservice.service.ItemService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@Transactional
+@SpringBootTest
+@AutoConfigureMockMvc
+class ItemControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ItemService itemService;
+
+    @Autowired
+    ItemRepository itemRepository;
+
+    @Test
+    void itemNotModified() throws Exception {
+        //given
+        Item item = itemService.save(new Item("itemA", 10000, 10));
+        MvcResult first = mockMvc.perform(get("/items/{itemId}", item.getId()))
+                .andExpect(status().isOk())
+                .andReturn();
+        String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+
+        //when 같은 ETag 로 다시 요청하면
+        MvcResult second = mockMvc.perform(get("/items/{itemId}", item.getId())
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andReturn();
+
+        //then 렌더링 없이 304 를 응답한다.
+        assertThat(etag).isNotNull();
+        assertThat(second.getModelAndView()).isNull();
+        assertThat(second.getResponse().getContentLength()).isZero();
+    }
+
+    @Test
+    void itemsModifiedAfterUpdate() throws Exception {
+        //given
+        Item item = itemService.save(new Item("itemA", 10000, 10));
+        String etag = mockMvc.perform(get("/items"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get("/items").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        //when 상품이 수정되면
+        itemService.update(item.getId(), new ItemUpdateDto("itemB", 20000, 20));
+
+        //then 이전 ETag 로는 다시 렌더링한다.
+        mockMvc.perform(get("/items").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void itemsNotModifiedWithoutQuery() throws Exception {
+        //given
+        itemService.save(new Item("itemA", 10000, 10));
+        String etag = mockMvc.perform(get("/items"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        //when, then 목록은 조회 없이 304 를 응답한다.
+        mockMvc.perform(get("/items").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        assertThat(StatementCounter.get()).isZero();
+    }
+
+    @Test
+    void itemsModifiedInSameSecond() throws Exception {
+        //given Last-Modified 는 초 단위라서 같은 초 안의 변경을 구분하지 못하므로 보내지 않는다.
+        Item item = itemService.save(new Item("itemA", 10000, 10));
+        mockMvc.perform(get("/items"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.LAST_MODIFIED));
+        mockMvc.perform(get("/items/{itemId}", item.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.LAST_MODIFIED));
+        long since = System.currentTimeMillis() + 1000;
+
+        //when 같은 초 안에 수정되면
+        itemService.update(item.getId(), new ItemUpdateDto("itemB", 20000, 20));
+
+        //then If-Modified-Since 로는 304 를 응답하지 않는다.
+        mockMvc.perform(get("/items").header(HttpHeaders.IF_MODIFIED_SINCE, since))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/items/{itemId}", item.getId()).header(HttpHeaders.IF_MODIFIED_SINCE, since))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void itemModifiedOnAnotherNode() throws Exception {
+        //given
+        Item item = itemService.save(new Item("itemA", 10000, 10));
+        String etag = mockMvc.perform(get("/items/{itemId}", item.getId()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        //when 다른 노드가 같은 DB 의 상품을 수정하면 (이 노드의 서비스를 거치지 않는다)
+        itemRepository.updateAll(Map.of(item.getId(), new ItemUpdateDto("itemB", 20000, 20)));
+
+        //then 상품 ETag 는 저장된 버전으로 만들므로 다시 렌더링한다.
+        mockMvc.perform(get("/items/{itemId}", item.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void itemNotFound() throws Exception {
+        //when 없는 상품을 조회하면
+        //then 404 를 응답한다.
+        mockMvc.perform(get("/items/{itemId}", Long.MAX_VALUE))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/items/{itemId}/edit", Long.MAX_VALUE))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void exportCsv() throws Exception {
+        //given
+        Item item1 = itemService.save(new Item("export,A", 10000, 10));
+        Item item2 = itemService.save(new Item("export\"B\"", 20000, 20));
+        itemService.save(new Item("exportC", 30000, 30));
+
+        //when 검색 조건으로 내보내면
+        //then 조건에 맞는 상품만 id 순으로, 값은 CSV 규칙대로 감싸서 쓴다.
+        mockMvc.perform(get("/items/export").param("itemName", "export").param("maxPrice", "20000"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"items.csv\""))
+                .andExpect(content().string("id,itemName,price,quantity\n"
+                        + item1.getId() + ",\"export,A\",10000,10\n"
+                        + item2.getId() + ",\"export\"\"B\"\"\",20000,20\n"));
+    }
+
+    @Test
+    void exportNdjsonAfterCursor() throws Exception {
+        //given
+        Item item1 = itemService.save(new Item("exportA", 10000, 10));
+        Item item2 = itemService.save(new Item("exportB", 20000, 20));
+
+        //when afterId 다음부터 ndjson 으로 내보내면
+        //then 한 줄에 상품 하나씩 쓴다.
+        mockMvc.perform(get("/items/export").param("format", "ndjson")
+                        .param("itemName", "export").param("afterId", String.valueOf(item1.getId())))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andExpect(content().string("{\"id\":" + item2.getId()
+                        + ",\"itemName\":\"exportB\",\"price\":20000,\"quantity\":20}\n"));
+    }
+}
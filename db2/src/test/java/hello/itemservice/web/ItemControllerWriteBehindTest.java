@@ -0,0 +1,69 @@
+package hello.itemservice.web;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.repository.writebehind.WriteBehindItemRepository;
+import hello.itemservice.service.ItemService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * write-behind 로 수정이 아직 반영되지 않았어도, 수정 직후의 상품 화면이 304 로 이전 화면을 보여주지 않는지 확인한다.
+ * 반영은 다른 스레드의 트랜잭션에서 일어나므로 @Transactional 을 붙이지 않고, 끝나면 컨텍스트(DB)를 버린다.
+ */
+@SpringBootTest(properties = {"item.write-behind.enabled=true", "item.write-behind.flush-interval=1h"})
+@AutoConfigureMockMvc
+@DirtiesContext
+class ItemControllerWriteBehindTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ItemService itemService;
+
+    @Autowired
+    WriteBehindItemRepository writeBehindItemRepository;
+
+    @Test
+    void itemModifiedWhileUpdatePending() throws Exception {
+        //given
+        Item item = itemService.save(new Item("itemA", 10000, 10));
+        String etag = mockMvc.perform(get("/items/{itemId}", item.getId()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        //when 수정하고 (아직 반영 전) 리다이렉트된 상품 화면을 이전 ETag 로 요청하면
+        mockMvc.perform(post("/items/{itemId}/edit", item.getId())
+                        .param("itemName", "itemB")
+                        .param("price", "20000")
+                        .param("quantity", "20"))
+                .andExpect(status().is3xxRedirection());
+        MvcResult result = mockMvc.perform(get("/items/{itemId}", item.getId())
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        //then 수정한 값을 보여준다.
+        Item shown = (Item) result.getModelAndView().getModel().get("item");
+        assertThat(shown.getItemName()).isEqualTo("itemB");
+        String pendingEtag = result.getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(pendingEtag).isNotEqualTo(etag);
+
+        //then 반영된 뒤에도 값이 같으므로 ETag 도 같다.
+        writeBehindItemRepository.flush();
+        mockMvc.perform(get("/items/{itemId}", item.getId())
+                        .header(HttpHeaders.IF_NONE_MATCH, pendingEtag))
+                .andExpect(status().isNotModified());
+    }
+}
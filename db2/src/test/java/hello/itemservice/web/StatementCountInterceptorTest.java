@@ -0,0 +1,56 @@
+package hello.itemservice.web;
+
+import hello.itemservice.domain.Item;
+import hello.itemservice.service.ItemService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@Transactional
+@SpringBootTest
+@AutoConfigureMockMvc
+class StatementCountInterceptorTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ItemService itemService;
+
+    @Autowired
+    MeterRegistry registry;
+
+    @Test
+    void statementsPerRequest() throws Exception {
+        //given
+        Item item = itemService.save(new Item("itemA", 10000, 10));
+        DistributionSummary before = registry.find("item.request.statements").tag("uri", "/items/{itemId}/edit").summary();
+        long count = before != null ? before.count() : 0;
+        double queries = registry.get("hibernate.query.executions").functionCounter().count();
+
+        //when 같은 URI 패턴으로 여러 번 요청하면
+        mockMvc.perform(get("/items/{itemId}/edit", item.getId())).andExpect(status().isOk());
+        mockMvc.perform(get("/items/{itemId}/edit", item.getId())).andExpect(status().isOk());
+        mockMvc.perform(get("/items")).andExpect(status().isOk());
+
+        //then URI 패턴마다 하나의 meter 에 SQL 문 수가 기록된다.
+        DistributionSummary summary = registry.get("item.request.statements").tag("uri", "/items/{itemId}/edit").summary();
+        assertThat(summary.count()).isEqualTo(count + 2);
+        assertThat(registry.find("item.request.statements").tag("uri", "/items/{itemId}/edit").summaries()).hasSize(1);
+        DistributionSummary items = registry.get("item.request.statements").tag("uri", "/items").summary();
+        assertThat(items.max()).isGreaterThanOrEqualTo(1);
+
+        //then 하이버네이트 통계도 meter 로 공개된다. (목록 조회 쿼리)
+        assertThat(registry.get("hibernate.query.executions").functionCounter().count()).isGreaterThan(queries);
+        assertThat(registry.find("hibernate.sessions.open").meters()).isNotEmpty();
+    }
+}